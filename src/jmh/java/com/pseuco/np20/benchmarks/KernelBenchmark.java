@@ -0,0 +1,141 @@
+package com.pseuco.np20.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.pseuco.np20.model.ObstacleMask;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.common.Occupancy;
+import com.pseuco.np20.simulation.common.Population;
+import com.pseuco.np20.simulation.common.SpatialHash;
+import com.pseuco.np20.simulation.common.Utils;
+import com.pseuco.np20.simulation.rocket.BorderChannel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the kernels a tick and a synchronisation consist of.
+ *
+ * <p>
+ * The movement and the infection are measured for the whole population. The exchange
+ * hands the persons in the left half of the grid from one population to another, as two
+ * patches do at a synchronisation. The propagation check compares a padding with the area
+ * owned by a patch.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KernelBenchmark {
+    private static final int GRID_SIZE = 1024;
+    private static final int PADDING = 10;
+
+    @Param({"4096", "65536"})
+    private int persons;
+
+    private Scenario scenario;
+    private Rectangle grid;
+    private ObstacleMask obstacles;
+
+    private Population population;
+    private Occupancy occupancy;
+    private SpatialHash spatialHash;
+
+    private Rectangle half;
+    private BorderChannel channel;
+    private Population neighbour;
+    private int epoch;
+
+    private Rectangle patch;
+    private Rectangle padding;
+
+    @Setup
+    public void setup() {
+        this.scenario = RandomScenarios.create("kernels", GRID_SIZE, this.persons, 1, 1);
+        this.grid = this.scenario.getGrid();
+        this.obstacles = this.scenario.getObstacleMask();
+
+        this.population = new Population(this.scenario.getParameters(), this.persons);
+        for (int person = 0; person < this.persons; person++) {
+            this.population.add(person, this.scenario.getPopulation().get(person));
+        }
+        this.occupancy = new Occupancy(this.grid);
+        this.occupancy.rebuild(this.population);
+        this.spatialHash = new SpatialHash(this.scenario.getParameters().getInfectionRadius());
+
+        this.half = new Rectangle(new XY(0, 0), new XY(GRID_SIZE / 2, GRID_SIZE));
+        this.channel = new BorderChannel(0, 1, this.half, this.scenario.getParameters(), 0);
+        this.neighbour = new Population(this.scenario.getParameters(), this.persons);
+        this.epoch = 0;
+
+        this.patch = new Rectangle(new XY(GRID_SIZE / 4, GRID_SIZE / 4), new XY(GRID_SIZE / 2, GRID_SIZE / 2));
+        this.padding = new Rectangle(
+            new XY(GRID_SIZE / 4 - PADDING, GRID_SIZE / 4),
+            new XY(PADDING, GRID_SIZE / 2)
+        );
+    }
+
+    @Benchmark
+    public Population movement() {
+        for (int index = 0; index < this.population.size(); index++) {
+            this.population.tick(index, this.grid, this.obstacles, this.occupancy);
+        }
+        for (int index = 0; index < this.population.size(); index++) {
+            this.population.bustGhost(index, this.occupancy);
+        }
+        return this.population;
+    }
+
+    /**
+     * Visits the pairs of persons within the infection radius without infecting anybody,
+     * so every invocation does the same work.
+     */
+    @Benchmark
+    public int infection() {
+        this.spatialHash.rebuild(this.population);
+        int infections = 0;
+        for (int i = 0; i < this.population.size(); i++) {
+            final int neighbors = this.spatialHash.collectNeighbors(i);
+            for (int k = 0; k < neighbors; k++) {
+                final int j = this.spatialHash.getNeighbor(k);
+                if (this.population.isInfectious(i) && this.population.isCoughing(i) && this.population.isBreathing(j)) {
+                    infections++;
+                }
+                if (this.population.isInfectious(j) && this.population.isCoughing(j) && this.population.isBreathing(i)) {
+                    infections++;
+                }
+            }
+        }
+        return infections;
+    }
+
+    @Benchmark
+    public Population exchange() {
+        this.neighbour.clear();
+        this.channel.publish(this.epoch, this.population, null);
+        this.channel.receive(this.epoch, this.neighbour, null);
+        this.epoch++;
+        this.neighbour.sortById();
+        return this.neighbour;
+    }
+
+    @Benchmark
+    public boolean mayPropagateFrom() {
+        return Utils.mayPropagateFrom(this.scenario, this.padding, this.patch);
+    }
+}
@@ -0,0 +1,72 @@
+package com.pseuco.np20.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.simulation.rocket.PatchExecution;
+import com.pseuco.np20.simulation.rocket.Rocket;
+import com.pseuco.np20.validator.DummyValidator;
+import com.pseuco.np20.validator.InsufficientPaddingException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares running every patch on a platform thread with running it on a virtual thread.
+ *
+ * <p>
+ * The pool of workers is measured as a reference. Virtual threads require a Java runtime
+ * supporting them, otherwise the respective benchmarks fail.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PatchExecutionBenchmark {
+    private static final int GRID_SIZE = 512;
+    private static final int PERSONS = 4096;
+    private static final int TICKS = 40;
+    private static final int PADDING = 10;
+
+    @Param({"4", "64", "1024"})
+    private int patches;
+
+    @Param({"PLATFORM_THREADS", "VIRTUAL_THREADS", "POOL"})
+    private PatchExecution execution;
+
+    private Scenario scenario;
+
+    @Setup
+    public void setup() {
+        this.scenario = RandomScenarios.create(
+            "patch-execution-" + this.patches, GRID_SIZE, PERSONS, this.patches, TICKS
+        );
+    }
+
+    @Benchmark
+    public Output simulate() throws InsufficientPaddingException {
+        final Rocket rocket = new Rocket(
+            this.scenario,
+            PADDING,
+            new DummyValidator(),
+            this.execution,
+            Runtime.getRuntime().availableProcessors()
+        );
+        rocket.run();
+        return rocket.getOutput();
+    }
+}
@@ -0,0 +1,94 @@
+package com.pseuco.np20.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Query;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+
+
+/**
+ * Generates the scenarios the benchmarks run on.
+ *
+ * <p>
+ * The scenarios are random but fixed by a seed, so the results of different commits are
+ * comparable. Every 64th person is infectious initially and no two persons share a cell.
+ * </p>
+ */
+public final class RandomScenarios {
+    public static final Parameters PARAMETERS = new Parameters(20, 150, 20, 140, 5, 3);
+
+    private static final long SEED = 42;
+
+    private RandomScenarios() {
+    }
+
+    /**
+     * Generates a square scenario without obstacles.
+     *
+     * @param name The name of the scenario.
+     * @param gridSize The width and height of the grid.
+     * @param persons The number of persons.
+     * @param patches The number of patches, which is rounded to a square number.
+     * @param ticks The number of ticks to simulate.
+     * @return The generated scenario.
+     */
+    public static Scenario create(String name, int gridSize, int persons, int patches, int ticks) {
+        final Random random = new Random(SEED);
+
+        // the grid is cut into equally sized square patches
+        final int side = (int) Math.round(Math.sqrt(patches));
+        final List<Integer> cuts = new ArrayList<>();
+        for (int cut = 1; cut < side; cut++) {
+            cuts.add(cut * gridSize / side);
+        }
+
+        final Set<XY> occupied = new HashSet<>();
+        final List<PersonInfo> population = new ArrayList<>();
+        for (int person = 0; person < persons; person++) {
+            XY position;
+            do {
+                position = new XY(random.nextInt(gridSize), random.nextInt(gridSize));
+            } while (!occupied.add(position));
+            final byte[] seed = new byte[32];
+            random.nextBytes(seed);
+            final InfectionState.State state = person % 64 == 0
+                ? InfectionState.State.INFECTIOUS
+                : InfectionState.State.SUSCEPTIBLE;
+            population.add(new PersonInfo(
+                "P" + person,
+                position,
+                seed,
+                new InfectionState(state, 0),
+                Direction.values()[random.nextInt(Direction.values().length)]
+            ));
+        }
+
+        final Map<String, Query> queries = new HashMap<>();
+        queries.put("all", new Query(new Rectangle(new XY(0, 0), new XY(gridSize, gridSize))));
+
+        return new Scenario(
+            name,
+            PARAMETERS,
+            ticks,
+            new XY(gridSize, gridSize),
+            false,
+            new Partition(cuts, cuts),
+            new ArrayList<>(),
+            queries,
+            population
+        );
+    }
+}
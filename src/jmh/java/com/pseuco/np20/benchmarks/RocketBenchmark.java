@@ -0,0 +1,66 @@
+package com.pseuco.np20.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.simulation.rocket.Rocket;
+import com.pseuco.np20.validator.DummyValidator;
+import com.pseuco.np20.validator.InsufficientPaddingException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures complete runs of Rocket on the pool of workers.
+ *
+ * <p>
+ * The scenarios are the same as those of {@link SlugBenchmark}, so both can be compared
+ * for the same population and grid size.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RocketBenchmark {
+    private static final int TICKS = 40;
+
+    @Param({"1024", "16384"})
+    private int persons;
+
+    @Param({"256", "1024"})
+    private int gridSize;
+
+    @Param({"4", "64"})
+    private int patches;
+
+    @Param({"10", "20"})
+    private int padding;
+
+    private Scenario scenario;
+
+    @Setup
+    public void setup() {
+        this.scenario = RandomScenarios.create("rocket", this.gridSize, this.persons, this.patches, TICKS);
+    }
+
+    @Benchmark
+    public Output simulate() throws InsufficientPaddingException {
+        final Rocket rocket = new Rocket(this.scenario, this.padding, new DummyValidator());
+        rocket.run();
+        return rocket.getOutput();
+    }
+}
@@ -0,0 +1,49 @@
+package com.pseuco.np20.benchmarks;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.pseuco.np20.simulation.common.Sha256;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Compares the step of the persons' random number generators based on <em>MessageDigest</em>
+ * with the allocation-free SHA-256 implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Sha256Benchmark {
+    private MessageDigest messageDigest;
+
+    private byte[] digest;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        this.messageDigest = MessageDigest.getInstance("SHA-256");
+        this.digest = new byte[Sha256.LENGTH];
+        new Random(42).nextBytes(this.digest);
+    }
+
+    @Benchmark
+    public byte[] messageDigest() {
+        this.digest = this.messageDigest.digest(this.digest);
+        return this.digest;
+    }
+
+    @Benchmark
+    public byte[] sha256InPlace() {
+        Sha256.hash(this.digest, 0, this.digest, 0);
+        return this.digest;
+    }
+}
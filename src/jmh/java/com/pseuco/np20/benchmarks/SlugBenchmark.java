@@ -0,0 +1,53 @@
+package com.pseuco.np20.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.simulation.slug.Slug;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures complete runs of the sequential reference implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SlugBenchmark {
+    private static final int TICKS = 40;
+
+    @Param({"1024", "16384"})
+    private int persons;
+
+    @Param({"256", "1024"})
+    private int gridSize;
+
+    private Scenario scenario;
+
+    @Setup
+    public void setup() {
+        this.scenario = RandomScenarios.create("slug", this.gridSize, this.persons, 1, TICKS);
+    }
+
+    @Benchmark
+    public Output simulate() {
+        final Slug slug = new Slug(this.scenario);
+        slug.run();
+        return slug.getOutput();
+    }
+}
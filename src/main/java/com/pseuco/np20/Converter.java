@@ -0,0 +1,119 @@
+package com.pseuco.np20;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+import com.pseuco.np20.simulation.common.BinaryFormat;
+import com.pseuco.np20.simulation.common.BinaryTraceWriter;
+import com.pseuco.np20.simulation.common.JsonTraceWriter;
+import com.pseuco.np20.simulation.common.ScenarioLoader;
+
+
+/**
+ * Converts scenarios and outputs between JSON and the binary format, see <em>BinaryFormat</em>.
+ *
+ * <p>
+ * Binary files are converted to JSON and JSON files to the binary format. Outputs are
+ * converted entry by entry, so their traces are never kept in memory as a whole.
+ * </p>
+ */
+public class Converter {
+    public class FileConverter implements IStringConverter<File> {
+        @Override
+        public File convert(String value) {
+            return new File(value);
+        }
+    }
+
+    private static final TypeReference<Map<String, List<Statistics>>> STATISTICS =
+        new TypeReference<Map<String, List<Statistics>>>() {};
+
+    @Parameter(names = "-in", required = true, converter = FileConverter.class)
+    private File inputFile;
+
+    @Parameter(names = "-out", required = true, converter = FileConverter.class)
+    private File outputFile;
+
+    public static void main(String[] args) throws IOException {
+        final Converter converter = new Converter();
+        JCommander.newBuilder().addObject(converter).args(args).build();
+        converter.run();
+    }
+
+    public void run() throws IOException {
+        final ObjectMapper objectMapper = new ObjectMapper();
+
+        final long startTime = System.nanoTime();
+        if (BinaryFormat.isBinary(this.inputFile)) {
+            this.toJson(objectMapper);
+        } else {
+            this.toBinary(objectMapper);
+        }
+        final long endTime = System.nanoTime();
+
+        System.out.println("Time: " + (endTime - startTime) / 1000000 + "ms");
+    }
+
+    private void toJson(ObjectMapper objectMapper) throws IOException {
+        if (!BinaryFormat.isBinaryOutput(this.inputFile)) {
+            objectMapper.writeValue(this.outputFile, BinaryFormat.readScenario(this.inputFile));
+            return;
+        }
+        final Output output = BinaryFormat.readOutput(this.inputFile);
+        try (JsonTraceWriter traceWriter = new JsonTraceWriter(objectMapper, this.outputFile, output.getScenario())) {
+            for (TraceEntry entry : output.getTrace()) {
+                traceWriter.write(entry);
+            }
+            traceWriter.finish(output.getStatistics());
+        }
+    }
+
+    private void toBinary(ObjectMapper objectMapper) throws IOException {
+        final ScenarioLoader loader = new ScenarioLoader(objectMapper);
+        try (JsonParser parser = objectMapper.getFactory().createParser(this.inputFile)) {
+            // outputs start with their scenario, scenarios with one of their properties
+            if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME) {
+                throw new JsonParseException(parser, "expected a scenario or an output");
+            }
+            if (!"scenario".equals(parser.getCurrentName())) {
+                BinaryFormat.writeScenario(this.outputFile, loader.load(this.inputFile));
+                return;
+            }
+            final Scenario scenario = loader.load(parser);
+            try (BinaryTraceWriter traceWriter = new BinaryTraceWriter(this.outputFile, scenario)) {
+                Map<String, List<Statistics>> statistics = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("trace".equals(field)) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            traceWriter.write(parser.readValueAs(TraceEntry.class));
+                        }
+                    } else if ("stats".equals(field)) {
+                        statistics = parser.readValueAs(STATISTICS);
+                    } else {
+                        throw new JsonParseException(parser, "unknown output property \"" + field + "\"");
+                    }
+                }
+                if (statistics == null) {
+                    throw new JsonParseException(parser, "missing property \"stats\"");
+                }
+                traceWriter.finish(statistics);
+            }
+        }
+    }
+}
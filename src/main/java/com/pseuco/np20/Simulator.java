@@ -9,9 +9,19 @@ import com.beust.jcommander.Parameter;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.simulation.rocket.PartitionPlanner;
+import com.pseuco.np20.simulation.rocket.PatchExecution;
 import com.pseuco.np20.simulation.rocket.Rocket;
+import com.pseuco.np20.simulation.rocket.RocketMetrics;
 import com.pseuco.np20.simulation.rocket.Starship;
+import com.pseuco.np20.simulation.common.BinaryFormat;
+import com.pseuco.np20.simulation.common.BinaryTraceWriter;
+import com.pseuco.np20.simulation.common.Checkpoint;
+import com.pseuco.np20.simulation.common.CheckpointWriter;
+import com.pseuco.np20.simulation.common.JsonTraceWriter;
+import com.pseuco.np20.simulation.common.ScenarioLoader;
 import com.pseuco.np20.simulation.common.Simulation;
+import com.pseuco.np20.simulation.common.TraceWriter;
 import com.pseuco.np20.simulation.slug.Slug;
 import com.pseuco.np20.validator.DummyValidator;
 import com.pseuco.np20.validator.InsufficientPaddingException;
@@ -38,6 +48,27 @@ public class Simulator {
     @Parameter(names = "-padding")
     private int padding = 10;
 
+    @Parameter(names = "-workers")
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "-virtual")
+    private boolean virtual = false;
+
+    @Parameter(names = "-plan")
+    private boolean plan = false;
+
+    @Parameter(names = "-rebalance")
+    private int rebalance = 0;
+
+    @Parameter(names = "-jmx")
+    private boolean jmx = false;
+
+    @Parameter(names = "-metrics", converter = FileConverter.class)
+    private File metricsFile;
+
+    @Parameter(names = "-metrics-interval")
+    private long metricsInterval = 10;
+
     @Parameter(names = "-slug")
     private boolean slug = false;
 
@@ -47,6 +78,24 @@ public class Simulator {
     @Parameter(names = "-starship")
     private boolean starship = false;
 
+    @Parameter(names = "-stream")
+    private boolean stream = false;
+
+    @Parameter(names = "-binary-scenario")
+    private boolean binaryScenario = false;
+
+    @Parameter(names = "-binary-out")
+    private boolean binaryOutput = false;
+
+    @Parameter(names = "-checkpoint", converter = FileConverter.class)
+    private File checkpointFile;
+
+    @Parameter(names = "-checkpoint-interval")
+    private int checkpointInterval = 1000;
+
+    @Parameter(names = "-resume", converter = FileConverter.class)
+    private File resumeFile;
+
     public static void main(String[] args) throws JsonParseException, JsonMappingException, IOException {
         final Simulator app = new Simulator();
         JCommander.newBuilder().addObject(app).args(args).build();
@@ -56,17 +105,41 @@ public class Simulator {
     public void run() throws JsonParseException, JsonMappingException, IOException {
         final ObjectMapper objectMapper = new ObjectMapper();
 
-        final Scenario scenario = objectMapper.readValue(this.scenarioFile, Scenario.class);
+        // the population is read right into the compact storage of the simulation engines
+        final Scenario scenario = this.binaryScenario
+            ? BinaryFormat.readScenario(this.scenarioFile)
+            : new ScenarioLoader(objectMapper).load(this.scenarioFile);
 
         System.out.println("Scenario: " + scenario.getName());
         System.out.println("Ticks: " + scenario.getTicks());
 
+        // the checkpoint is read before a new checkpoint file may replace it
+        final Checkpoint checkpoint = this.resumeFile != null ? Checkpoint.read(this.resumeFile, scenario) : null;
+        if (checkpoint != null) {
+            System.out.println("Resuming at tick: " + checkpoint.getTick());
+        }
+
         Simulation simulation;
+        RocketMetrics metrics = null;
         if (this.starship) {
             simulation = new Starship(scenario);
         } else if (this.rocket) {
             try {
-                simulation = new Rocket(scenario, this.padding, new DummyValidator());
+                final Rocket rocket = new Rocket(
+                    scenario,
+                    this.padding,
+                    new DummyValidator(),
+                    this.virtual ? PatchExecution.VIRTUAL_THREADS : PatchExecution.POOL,
+                    this.workers
+                );
+                if (this.plan) {
+                    // the patches are balanced according to the initial population
+                    rocket.setPartition(PartitionPlanner.plan(scenario, this.padding));
+                }
+                // the patches are checked for imbalance every given number of synchronisations
+                rocket.setRebalancing(this.rebalance, Rocket.DEFAULT_REBALANCE_TOLERANCE);
+                metrics = rocket.getMetrics();
+                simulation = rocket;
             } catch (InsufficientPaddingException error) {
                 throw new RuntimeException(error);
             }
@@ -74,12 +147,68 @@ public class Simulator {
             simulation = new Slug(scenario);
         }
 
+        if (metrics != null) {
+            // the progress of the patches is exposed while simulating
+            if (this.jmx) {
+                metrics.register();
+            }
+            if (this.metricsFile != null) {
+                metrics.startWriting(this.metricsFile, this.metricsInterval * 1000);
+            }
+        }
+
+        if (checkpoint != null) {
+            simulation.resume(checkpoint);
+        }
+
+        CheckpointWriter checkpointWriter = null;
+        try {
+            if (this.checkpointFile != null) {
+                // the checkpoints are written in the background and complete when the writer is closed
+                checkpointWriter = new CheckpointWriter(this.checkpointFile, scenario);
+                simulation.setCheckpointWriter(checkpointWriter, this.checkpointInterval);
+            }
+            this.output(objectMapper, scenario, simulation);
+        } finally {
+            try {
+                if (checkpointWriter != null) {
+                    checkpointWriter.close();
+                }
+            } finally {
+                if (metrics != null) {
+                    metrics.close();
+                }
+            }
+        }
+    }
+
+    private void output(ObjectMapper objectMapper, Scenario scenario, Simulation simulation) throws IOException {
+        if (this.stream) {
+            // the trace is written while simulating instead of being kept in memory
+            try (
+                TraceWriter traceWriter = this.binaryOutput
+                    ? new BinaryTraceWriter(this.outputFile, scenario)
+                    : new JsonTraceWriter(objectMapper, this.outputFile, scenario)
+            ) {
+                simulation.setTraceWriter(traceWriter);
+                this.simulate(simulation);
+                traceWriter.finish(simulation.getOutput().getStatistics());
+            }
+        } else {
+            this.simulate(simulation);
+            if (this.binaryOutput) {
+                BinaryFormat.writeOutput(this.outputFile, simulation.getOutput());
+            } else {
+                objectMapper.writeValue(this.outputFile, simulation.getOutput());
+            }
+        }
+    }
+
+    private void simulate(Simulation simulation) {
         final long startTime = System.nanoTime();
         simulation.run();
         final long endTime = System.nanoTime();
 
         System.out.println("Time: " + (endTime - startTime) / 1000000 + "ms");
-
-        objectMapper.writeValue(this.outputFile, simulation.getOutput());
     }
 }
@@ -0,0 +1,64 @@
+package com.pseuco.np20.generator;
+
+
+/**
+ * A pseudo-random permutation of the cells of a grid.
+ *
+ * <p>
+ * The permutation is a Feistel network over the smallest domain of an even number of bits
+ * containing all cells. Values outside of the grid are mapped again until they fall into
+ * the grid, which keeps the mapping bijective. Hence, visiting the cells in the order of
+ * the permutation visits every cell exactly once without remembering the visited cells.
+ * </p>
+ */
+final class CellPermutation {
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] keys;
+
+    /**
+     * Constructs a permutation of the given number of cells.
+     *
+     * @param size The number of cells.
+     * @param key The key determining the permutation.
+     */
+    CellPermutation(long size, long key) {
+        int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(size - 1));
+        bits += bits & 1;
+        this.size = size;
+        this.halfBits = bits / 2;
+        this.halfMask = (1L << this.halfBits) - 1;
+        this.keys = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            this.keys[round] = ScenarioGenerator.mix(key + round);
+        }
+    }
+
+    /**
+     * Returns the cell at the given position of the permutation.
+     *
+     * @param index The position, which has to be smaller than the number of cells.
+     * @return The cell at the given position.
+     */
+    long apply(long index) {
+        long value = index;
+        do {
+            value = this.encrypt(value);
+        } while (value >= this.size);
+        return value;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> this.halfBits;
+        long right = value & this.halfMask;
+        for (long key : this.keys) {
+            final long next = left ^ (ScenarioGenerator.mix(right ^ key) & this.halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << this.halfBits) | right;
+    }
+}
@@ -0,0 +1,401 @@
+package com.pseuco.np20.generator;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Query;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.XY;
+
+
+/**
+ * Generates synthetic scenarios of arbitrary size.
+ *
+ * <p>
+ * The scenario is streamed to the output, so neither the population nor the obstacles are
+ * ever held in memory. Everything is derived from a master seed: the same options and seed
+ * always produce the same file.
+ * </p>
+ *
+ * <p>
+ * The grid is divided into blocks of {@value #BLOCK} by {@value #BLOCK} cells, each of
+ * which holds at most one obstacle. Whether a cell is covered by an obstacle can thus be
+ * recomputed from its block at any time. The persons are placed by visiting the cells in
+ * the order of a pseudo-random permutation. A free cell is taken with a probability that
+ * grows towards the centres of the clusters. If too few cells have been taken after all
+ * cells have been visited, the remaining cells are taken in a second pass. As every cell is
+ * visited at most once per pass, no two persons share a cell.
+ * </p>
+ */
+public class ScenarioGenerator {
+    public class FileConverter implements IStringConverter<File> {
+        @Override
+        public File convert(String value) {
+            return new File(value);
+        }
+    }
+
+    private static final int BLOCK = 16;
+
+    private static final long OBSTACLE_SALT = 1;
+    private static final long CELL_SALT = 2;
+    private static final long PERSON_SALT = 3;
+    private static final long CLUSTER_SALT = 4;
+    private static final long QUERY_SALT = 5;
+    private static final long PERMUTATION_SALT = 6;
+
+    @Parameter(names = "-out", required = true, converter = FileConverter.class)
+    private File outputFile;
+
+    @Parameter(names = "-name")
+    private String name = "generated";
+
+    @Parameter(names = "-seed")
+    private long seed = 0;
+
+    @Parameter(names = "-width")
+    private int width = 1000;
+
+    @Parameter(names = "-height")
+    private int height = 1000;
+
+    @Parameter(names = "-persons")
+    private int persons = 10000;
+
+    @Parameter(names = "-ticks")
+    private int ticks = 100;
+
+    @Parameter(names = "-trace")
+    private boolean trace = false;
+
+    @Parameter(names = "-infected")
+    private double infected = 0.01;
+
+    @Parameter(names = "-infection-radius")
+    private int infectionRadius = 5;
+
+    @Parameter(names = "-incubation-time")
+    private int incubationTime = 3;
+
+    @Parameter(names = "-obstacle-density")
+    private double obstacleDensity = 0;
+
+    @Parameter(names = "-clusters")
+    private int clusters = 0;
+
+    @Parameter(names = "-cluster-radius")
+    private int clusterRadius = 0;
+
+    @Parameter(names = "-clustering")
+    private double clustering = 0.9;
+
+    @Parameter(names = "-columns")
+    private int columns = 1;
+
+    @Parameter(names = "-rows")
+    private int rows = 1;
+
+    @Parameter(names = "-queries")
+    private int queries = 1;
+
+    private double obstacleShare;
+    private int obstacleSide;
+    private final int[] obstacle = new int[4];
+
+    private double[] clusterXs;
+    private double[] clusterYs;
+
+    public static void main(String[] args) throws IOException {
+        final ScenarioGenerator generator = new ScenarioGenerator();
+        JCommander.newBuilder().addObject(generator).args(args).build();
+        generator.run();
+    }
+
+    public void run() throws IOException {
+        final long startTime = System.nanoTime();
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(this.outputFile), 1 << 16)) {
+            this.generate(output);
+        }
+        final long endTime = System.nanoTime();
+
+        System.out.println("Scenario: " + this.name);
+        System.out.println("Persons: " + this.persons);
+        System.out.println("Time: " + (endTime - startTime) / 1000000 + "ms");
+    }
+
+    /**
+     * Writes the scenario to the given stream.
+     *
+     * @param output The stream to write the scenario to.
+     * @throws IOException If the scenario cannot be written.
+     * @throws IllegalArgumentException If the options do not describe a valid scenario.
+     */
+    public void generate(OutputStream output) throws IOException {
+        this.prepare();
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("name", this.name);
+            generator.writeNumberField("ticks", this.ticks);
+            generator.writeFieldName("parameters");
+            generator.writeObject(new Parameters(20, 150, 20, 140, this.infectionRadius, this.incubationTime));
+            generator.writeFieldName("gridSize");
+            generator.writeObject(new XY(this.width, this.height));
+            generator.writeBooleanField("trace", this.trace);
+            generator.writeFieldName("partition");
+            generator.writeObject(new Partition(uniformCuts(this.columns, this.width), uniformCuts(this.rows, this.height)));
+
+            generator.writeFieldName("obstacles");
+            generator.writeStartArray();
+            this.writeObstacles(generator);
+            generator.writeEndArray();
+
+            generator.writeFieldName("statQueries");
+            generator.writeStartObject();
+            this.writeQueries(generator);
+            generator.writeEndObject();
+
+            generator.writeFieldName("population");
+            generator.writeStartArray();
+            this.writePopulation(generator);
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Validates the options and derives the layout of the obstacles and clusters.
+     */
+    private void prepare() {
+        if (this.width <= 0 || this.height <= 0) {
+            throw new IllegalArgumentException("the grid must not be empty");
+        }
+        if (this.columns <= 0 || this.columns > this.width || this.rows <= 0 || this.rows > this.height) {
+            throw new IllegalArgumentException("the partition does not fit the grid");
+        }
+        if (this.obstacleDensity < 0 || this.obstacleDensity > 0.9) {
+            throw new IllegalArgumentException("the obstacle density must be between 0 and 0.9");
+        }
+        if (this.clustering < 0 || this.clustering > 1 || this.infected < 0 || this.infected > 1) {
+            throw new IllegalArgumentException("the clustering and the infected share must be between 0 and 1");
+        }
+        if (this.persons < 0 || this.clusters < 0 || this.queries < 0 || this.ticks < 0) {
+            throw new IllegalArgumentException("the counts must not be negative");
+        }
+
+        // sparse obstacles cover a quarter of their block, dense ones are placed in every block
+        this.obstacleShare = Math.min(1, 4 * this.obstacleDensity);
+        this.obstacleSide = this.obstacleDensity < 0.25
+            ? BLOCK / 2
+            : (int) Math.round(BLOCK * Math.sqrt(this.obstacleDensity));
+
+        if (this.persons > this.countFreeCells()) {
+            throw new IllegalArgumentException("there are not enough free cells for the persons");
+        }
+
+        final SplittableRandom random = new SplittableRandom(this.hash(CLUSTER_SALT, 0));
+        this.clusterXs = new double[this.clusters];
+        this.clusterYs = new double[this.clusters];
+        for (int cluster = 0; cluster < this.clusters; cluster++) {
+            this.clusterXs[cluster] = random.nextDouble() * this.width;
+            this.clusterYs[cluster] = random.nextDouble() * this.height;
+        }
+        if (this.clusterRadius <= 0) {
+            this.clusterRadius = Math.max(1, Math.min(this.width, this.height) / 20);
+        }
+    }
+
+    private static List<Integer> uniformCuts(int parts, int length) {
+        final List<Integer> cuts = new ArrayList<>(parts - 1);
+        for (int cut = 1; cut < parts; cut++) {
+            cuts.add((int) ((long) cut * length / parts));
+        }
+        return cuts;
+    }
+
+    private int blockColumns() {
+        return (this.width + BLOCK - 1) / BLOCK;
+    }
+
+    private int blockRows() {
+        return (this.height + BLOCK - 1) / BLOCK;
+    }
+
+    /**
+     * Computes the obstacle of a block into {@link #obstacle} as <em>x</em>, <em>y</em>,
+     * width and height.
+     *
+     * @return Whether the block holds an obstacle.
+     */
+    private boolean computeObstacle(int blockX, int blockY) {
+        final long hash = this.hash(OBSTACLE_SALT, (long) blockY * this.blockColumns() + blockX);
+        if (unit(hash) >= this.obstacleShare) {
+            return false;
+        }
+        final int blockWidth = Math.min(BLOCK, this.width - blockX * BLOCK);
+        final int blockHeight = Math.min(BLOCK, this.height - blockY * BLOCK);
+        final int obstacleWidth = Math.min(this.obstacleSide, blockWidth);
+        final int obstacleHeight = Math.min(this.obstacleSide, blockHeight);
+        final long offsets = mix(hash);
+        this.obstacle[0] = blockX * BLOCK + (int) Long.remainderUnsigned(offsets, blockWidth - obstacleWidth + 1);
+        this.obstacle[1] = blockY * BLOCK + (int) Long.remainderUnsigned(offsets >>> 32, blockHeight - obstacleHeight + 1);
+        this.obstacle[2] = obstacleWidth;
+        this.obstacle[3] = obstacleHeight;
+        return obstacleWidth > 0 && obstacleHeight > 0;
+    }
+
+    private boolean onObstacle(int x, int y) {
+        if (!this.computeObstacle(x / BLOCK, y / BLOCK)) {
+            return false;
+        }
+        return (
+            this.obstacle[0] <= x && x < this.obstacle[0] + this.obstacle[2]
+            && this.obstacle[1] <= y && y < this.obstacle[1] + this.obstacle[3]
+        );
+    }
+
+    private long countFreeCells() {
+        long free = (long) this.width * this.height;
+        for (int blockY = 0; blockY < this.blockRows(); blockY++) {
+            for (int blockX = 0; blockX < this.blockColumns(); blockX++) {
+                if (this.computeObstacle(blockX, blockY)) {
+                    free -= (long) this.obstacle[2] * this.obstacle[3];
+                }
+            }
+        }
+        return free;
+    }
+
+    private void writeObstacles(JsonGenerator generator) throws IOException {
+        for (int blockY = 0; blockY < this.blockRows(); blockY++) {
+            for (int blockX = 0; blockX < this.blockColumns(); blockX++) {
+                if (this.computeObstacle(blockX, blockY)) {
+                    generator.writeObject(new Rectangle(
+                        new XY(this.obstacle[0], this.obstacle[1]),
+                        new XY(this.obstacle[2], this.obstacle[3])
+                    ));
+                }
+            }
+        }
+    }
+
+    /**
+     * The first query covers the whole grid, all further queries cover random areas.
+     */
+    private void writeQueries(JsonGenerator generator) throws IOException {
+        final SplittableRandom random = new SplittableRandom(this.hash(QUERY_SALT, 0));
+        for (int query = 0; query < this.queries; query++) {
+            final Rectangle area;
+            if (query == 0) {
+                area = new Rectangle(new XY(0, 0), new XY(this.width, this.height));
+            } else {
+                final int x = random.nextInt(this.width);
+                final int y = random.nextInt(this.height);
+                area = new Rectangle(
+                    new XY(x, y),
+                    new XY(1 + random.nextInt(this.width - x), 1 + random.nextInt(this.height - y))
+                );
+            }
+            generator.writeFieldName(query == 0 ? "all" : "query" + query);
+            generator.writeObject(new Query(area));
+        }
+    }
+
+    /**
+     * The probability with which a free cell is taken in the first pass.
+     */
+    private double attraction(int x, int y) {
+        if (this.clusters == 0) {
+            return 1;
+        }
+        double closest = Double.MAX_VALUE;
+        for (int cluster = 0; cluster < this.clusters; cluster++) {
+            final double deltaX = x - this.clusterXs[cluster];
+            final double deltaY = y - this.clusterYs[cluster];
+            closest = Math.min(closest, deltaX * deltaX + deltaY * deltaY);
+        }
+        final double bump = Math.exp(-closest / (2.0 * this.clusterRadius * this.clusterRadius));
+        return (1 - this.clustering) + this.clustering * bump;
+    }
+
+    private void writePopulation(JsonGenerator generator) throws IOException {
+        final long cells = (long) this.width * this.height;
+        final CellPermutation permutation = new CellPermutation(cells, this.hash(PERMUTATION_SALT, 0));
+
+        int person = 0;
+        for (int pass = 0; pass < 2 && person < this.persons; pass++) {
+            for (long index = 0; index < cells && person < this.persons; index++) {
+                final long cell = permutation.apply(index);
+                final int x = (int) (cell % this.width);
+                final int y = (int) (cell / this.width);
+                if (this.onObstacle(x, y)) {
+                    continue;
+                }
+                // the decision only depends on the cell, so the second pass takes exactly the other cells
+                final boolean attracted = unit(this.hash(CELL_SALT, cell)) < this.attraction(x, y);
+                if (attracted == (pass == 0)) {
+                    generator.writeObject(this.createPerson(person, x, y));
+                    person++;
+                }
+            }
+        }
+    }
+
+    private PersonInfo createPerson(int person, int x, int y) {
+        final SplittableRandom random = new SplittableRandom(this.hash(PERSON_SALT, person));
+        final byte[] personSeed = new byte[32];
+        for (int offset = 0; offset < personSeed.length; offset += 8) {
+            final long bits = random.nextLong();
+            for (int shift = 0; shift < 8; shift++) {
+                personSeed[offset + shift] = (byte) (bits >>> (8 * shift));
+            }
+        }
+        final InfectionState.State state = random.nextDouble() < this.infected
+            ? InfectionState.State.INFECTIOUS
+            : InfectionState.State.SUSCEPTIBLE;
+        final Direction[] directions = Direction.values();
+        return new PersonInfo(
+            "P" + person,
+            new XY(x, y),
+            personSeed,
+            new InfectionState(state, 0),
+            directions[random.nextInt(directions.length)]
+        );
+    }
+
+    private long hash(long salt, long value) {
+        return mix(mix(this.seed ^ (salt * 0x9e3779b97f4a7c15L)) + value * 0xc2b2ae3d27d4eb4fL);
+    }
+
+    private static double unit(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The finalizer of SplitMix64, which scrambles the bits of a value.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
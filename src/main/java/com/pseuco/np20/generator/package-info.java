@@ -0,0 +1,4 @@
+/**
+ * Generates synthetic scenarios for benchmarks and stress tests.
+ */
+package com.pseuco.np20.generator;
@@ -0,0 +1,81 @@
+package com.pseuco.np20.model;
+
+import java.util.List;
+
+
+/**
+ * An immutable bitmap marking the cells of the grid covered by obstacles.
+ *
+ * <p>
+ * The bitmap is computed once from the obstacle rectangles and allows to check in constant
+ * time and without allocations whether a cell of the grid is covered by an obstacle. As it
+ * is never modified after construction, it can be shared freely between threads.
+ * </p>
+ */
+public class ObstacleMask {
+    private final List<Rectangle> obstacles;
+
+    private final int width;
+    private final int height;
+
+    private final long[] bits;
+
+    /**
+     * Constructs the mask for the given grid size and obstacles.
+     *
+     * @param gridSize The size of the grid.
+     * @param obstacles The obstacles on the grid.
+     */
+    public ObstacleMask(final XY gridSize, final List<Rectangle> obstacles) {
+        this.obstacles = obstacles;
+        this.width = gridSize.getX();
+        this.height = gridSize.getY();
+        this.bits = new long[(this.width * this.height + 63) >>> 6];
+        for (Rectangle obstacle : obstacles) {
+            final int minX = Math.max(0, obstacle.getTopLeft().getX());
+            final int minY = Math.max(0, obstacle.getTopLeft().getY());
+            final int maxX = Math.min(this.width, obstacle.getBottomRight().getX());
+            final int maxY = Math.min(this.height, obstacle.getBottomRight().getY());
+            for (int y = minY; y < maxY; y++) {
+                for (int x = minX; x < maxX; x++) {
+                    final int index = y * this.width + x;
+                    this.bits[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether there is an obstacle on the given cell.
+     *
+     * @param x The <em>x</em>-coordinate of the cell.
+     * @param y The <em>y</em>-coordinate of the cell.
+     * @return Whether there is an obstacle on the given cell.
+     */
+    public boolean onObstacle(final int x, final int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            // obstacles may reach beyond the grid, those cells are not part of the bitmap
+            for (Rectangle obstacle : this.obstacles) {
+                if (
+                    obstacle.getTopLeft().getX() <= x && x < obstacle.getBottomRight().getX()
+                    && obstacle.getTopLeft().getY() <= y && y < obstacle.getBottomRight().getY()
+                ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final int index = y * this.width + x;
+        return (this.bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Checks whether there is an obstacle on the given cell.
+     *
+     * @param cell The cell to check for obstacles.
+     * @return Whether there is an obstacle on the given cell.
+     */
+    public boolean onObstacle(final XY cell) {
+        return this.onObstacle(cell.getX(), cell.getY());
+    }
+}
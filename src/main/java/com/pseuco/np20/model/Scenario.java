@@ -39,6 +39,9 @@ public class Scenario {
     @JsonProperty(value = "population")
     private final List<PersonInfo> population;
 
+    @JsonIgnore
+    private volatile ObstacleMask obstacleMask;
+
     /**
      * Constructs a scenario with the provided information.
      *
@@ -192,11 +195,30 @@ public class Scenario {
      * @return Whether there is an obstacle on the given cell.
      */
     public boolean onObstacle(XY cell) {
-        for (Rectangle obstacle : this.obstacles) {
-            if (obstacle.contains(cell)) {
-                return true;
+        return this.getObstacleMask().onObstacle(cell);
+    }
+
+    /**
+     * Returns a bitmap of the cells covered by obstacles.
+     *
+     * <p>
+     * The bitmap is computed on first use and shared by all callers afterwards.
+     * </p>
+     *
+     * @return A bitmap of the cells covered by obstacles.
+     */
+    @JsonIgnore
+    public ObstacleMask getObstacleMask() {
+        ObstacleMask obstacleMask = this.obstacleMask;
+        if (obstacleMask == null) {
+            synchronized (this) {
+                obstacleMask = this.obstacleMask;
+                if (obstacleMask == null) {
+                    obstacleMask = new ObstacleMask(this.gridSize, this.obstacles);
+                    this.obstacleMask = obstacleMask;
+                }
             }
         }
-        return false;
+        return obstacleMask;
     }
 }
\ No newline at end of file
@@ -0,0 +1,610 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Query;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+import com.pseuco.np20.model.XY;
+
+
+/**
+ * Reads and writes scenarios and outputs in a compact binary format.
+ *
+ * <p>
+ * All numbers are big-endian, strings are stored as their length followed by their UTF-8
+ * bytes, and rectangles as the coordinates of their top left corner followed by their size.
+ * A file is laid out as follows:
+ * </p>
+ *
+ * <pre>
+ * file       := magic:int version:int kind:byte (scenario | scenario trace statistics)
+ * scenario   := name:string parameters:int[6] ticks:int gridSize:int[2] trace:byte
+ *               partition:(count:int int*)[2] obstacles:(count:int rectangle*)
+ *               queries:(count:int (key:string rectangle)*) names:(count:int string*) block
+ * trace      := count:int block*
+ * statistics := count:int (key:string count:int long[4]*)*
+ * block      := count:int seeds:int seedBytes:int record[count] (row:int length:int byte*)[seeds]
+ * record     := id:int x:int y:int direction:byte state:byte inStateSince:int digest:byte[32]
+ * </pre>
+ *
+ * <p>
+ * A block holds a population in fixed-width records, the names of the persons are only
+ * stored once with the scenario. The parameters are stored in the order of the constructor
+ * of <em>Parameters</em>, directions and infection states by their ordinals. Persons whose
+ * RNG state is a seed of another length than a digest have their seed stored after the
+ * records of the block.
+ * </p>
+ *
+ * <p>
+ * Files are read through memory mappings. The records of a scenario are decoded right into
+ * a <em>Population</em> and the entries of a trace are only decoded when they are accessed.
+ * </p>
+ */
+public final class BinaryFormat {
+    /**
+     * The first four bytes of every binary file, <em>NP20</em> in ASCII.
+     */
+    public static final int MAGIC = 0x4E503230;
+
+    /**
+     * The version of the format, which changes whenever the layout changes.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of a person record in bytes.
+     */
+    public static final int RECORD_SIZE = 3 * Integer.BYTES + 2 * Byte.BYTES + Integer.BYTES + Sha256.LENGTH;
+
+    static final byte SCENARIO = 1;
+    static final byte OUTPUT = 2;
+    static final byte CHECKPOINT = 3;
+
+    private static final int BLOCK_HEADER_SIZE = 3 * Integer.BYTES;
+
+    /**
+     * The maximal size of a single memory mapping.
+     */
+    private static final long WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final InfectionState.State[] STATES = InfectionState.State.values();
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Returns whether the given file starts like a binary file.
+     *
+     * @param file The file to check.
+     * @return Whether the given file starts like a binary file.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isBinary(File file) throws IOException {
+        return readKind(file) != 0;
+    }
+
+    /**
+     * Returns whether the given file starts like a binary output.
+     *
+     * @param file The file to check.
+     * @return Whether the given file starts like a binary output.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isBinaryOutput(File file) throws IOException {
+        return readKind(file) == OUTPUT;
+    }
+
+    /**
+     * Returns the kind of a binary file or <em>0</em> if the file is not a binary file.
+     */
+    private static byte readKind(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES + Byte.BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                continue;
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                return 0;
+            }
+            return header.get(2 * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Writes a scenario to the given file.
+     *
+     * @param file The file to write the scenario to.
+     * @param scenario The scenario to write.
+     * @throws IOException If the scenario cannot be written.
+     */
+    public static void writeScenario(File file, Scenario scenario) throws IOException {
+        try (ChannelWriter writer = new ChannelWriter(file)) {
+            writeHeader(writer, SCENARIO);
+            writeScenario(writer, scenario);
+        }
+    }
+
+    /**
+     * Writes an output to the given file.
+     *
+     * @param file The file to write the output to.
+     * @param output The output to write.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void writeOutput(File file, Output output) throws IOException {
+        try (BinaryTraceWriter traceWriter = new BinaryTraceWriter(file, output.getScenario())) {
+            for (TraceEntry entry : output.getTrace()) {
+                traceWriter.write(entry);
+            }
+            traceWriter.finish(output.getStatistics());
+        }
+    }
+
+    /**
+     * Reads a scenario from the given file.
+     *
+     * @param file The file to read the scenario from.
+     * @return The scenario, holding its population as a view, see <em>Population.of</em>.
+     * @throws IOException If the file cannot be read or does not hold a scenario.
+     */
+    public static Scenario readScenario(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > WINDOW_SIZE) {
+                throw new IOException("binary scenario exceeds " + WINDOW_SIZE + " bytes");
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readHeader(buffer, SCENARIO);
+            return readScenario(buffer);
+        }
+    }
+
+    /**
+     * Reads an output from the given file.
+     *
+     * <p>
+     * The entries of the trace are decoded whenever they are accessed.
+     * </p>
+     *
+     * @param file The file to read the output from.
+     * @return The output.
+     * @throws IOException If the file cannot be read or does not hold an output.
+     */
+    public static Output readOutput(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, WINDOW_SIZE));
+            readHeader(head, OUTPUT);
+            final Scenario scenario = readScenario(head);
+            final int entries = head.getInt();
+
+            // the trace may exceed a single mapping, so we map it in windows holding whole entries
+            final List<MappedByteBuffer> windows = new ArrayList<>();
+            final int[] windowOf = new int[entries];
+            final int[] offsets = new int[entries];
+            final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            long position = head.position();
+            long windowStart = position;
+            for (int entry = 0; entry < entries; entry++) {
+                blockHeader.clear();
+                while (blockHeader.hasRemaining()) {
+                    if (channel.read(blockHeader, position + blockHeader.position()) < 0) {
+                        throw new IOException("binary output ends within the trace");
+                    }
+                }
+                final long length = getBlockLength(blockHeader, 0);
+                if (position + length - windowStart > WINDOW_SIZE) {
+                    windows.add(channel.map(FileChannel.MapMode.READ_ONLY, windowStart, position - windowStart));
+                    windowStart = position;
+                }
+                windowOf[entry] = windows.size();
+                offsets[entry] = (int) (position - windowStart);
+                position += length;
+            }
+            windows.add(channel.map(FileChannel.MapMode.READ_ONLY, windowStart, position - windowStart));
+
+            final MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, position, size - position);
+            final Map<String, List<Statistics>> statistics = readStatistics(tail);
+
+            final Population population = Population.of(scenario.getParameters(), scenario.getPopulation());
+            return new Output(scenario, new Trace(population, windows, windowOf, offsets), statistics);
+        }
+    }
+
+    static void writeHeader(ChannelWriter writer, byte kind) throws IOException {
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+        writer.putByte(kind);
+    }
+
+    static void readHeader(ByteBuffer buffer, byte kind) throws IOException {
+        if (buffer.remaining() < 2 * Integer.BYTES + Byte.BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("not a binary file");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported binary format version " + version);
+        }
+        if (buffer.get() != kind) {
+            throw new IOException(
+                "not a binary " + (kind == SCENARIO ? "scenario" : kind == OUTPUT ? "output" : "checkpoint")
+            );
+        }
+    }
+
+    static void writeScenario(ChannelWriter writer, Scenario scenario) throws IOException {
+        writer.putString(scenario.getName());
+        final Parameters parameters = scenario.getParameters();
+        writer.putInt(parameters.getCoughThreshold());
+        writer.putInt(parameters.getBreathThreshold());
+        writer.putInt(parameters.getAccelerationDivisor());
+        writer.putInt(parameters.getRecoveryTime());
+        writer.putInt(parameters.getInfectionRadius());
+        writer.putInt(parameters.getIncubationTime());
+        writer.putInt(scenario.getTicks());
+        writer.putInt(scenario.getGridSize().getX());
+        writer.putInt(scenario.getGridSize().getY());
+        writer.putByte((byte) (scenario.getTrace() ? 1 : 0));
+
+        writeInts(writer, scenario.getPartition().getX());
+        writeInts(writer, scenario.getPartition().getY());
+
+        writer.putInt(scenario.getObstacles().size());
+        for (Rectangle obstacle : scenario.getObstacles()) {
+            writeRectangle(writer, obstacle);
+        }
+
+        writer.putInt(scenario.getQueries().size());
+        for (Map.Entry<String, Query> query : scenario.getQueries().entrySet()) {
+            writer.putString(query.getKey());
+            writeRectangle(writer, query.getValue().getArea());
+        }
+
+        final Population population = Population.of(scenario.getParameters(), scenario.getPopulation());
+        writer.putInt(population.size());
+        for (int row = 0; row < population.size(); row++) {
+            writer.putString(population.getName(row));
+        }
+
+        writePopulation(writer, population);
+    }
+
+    /**
+     * Writes the persons of a population as a block.
+     *
+     * @param writer The writer to write the block to.
+     * @param population The population to write.
+     * @throws IOException If the block cannot be written.
+     */
+    static void writePopulation(ChannelWriter writer, Population population) throws IOException {
+        final long blockStart = writer.position();
+        writer.putInt(population.size());
+        writer.putInt(0);
+        writer.putInt(0);
+        final byte[] digest = new byte[Sha256.LENGTH];
+        for (int row = 0; row < population.size(); row++) {
+            if (population.hasDigest(row)) {
+                population.copyDigest(row, digest, 0);
+            }
+            writeRecord(
+                writer,
+                population.getId(row),
+                population.getX(row),
+                population.getY(row),
+                population.getDirection(row),
+                population.getState(row),
+                population.getInStateSince(row),
+                population.hasDigest(row) ? digest : null
+            );
+        }
+        int seeds = 0;
+        int seedBytes = 0;
+        for (int row = 0; row < population.size(); row++) {
+            if (!population.hasDigest(row)) {
+                seedBytes += writeSeed(writer, row, population.getDigest(row));
+                seeds++;
+            }
+        }
+        writer.putIntAt(blockStart + Integer.BYTES, seeds);
+        writer.putIntAt(blockStart + 2 * Integer.BYTES, seedBytes);
+    }
+
+    private static Scenario readScenario(ByteBuffer buffer) {
+        final String name = readString(buffer);
+        final Parameters parameters = new Parameters(
+            buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()
+        );
+        final int ticks = buffer.getInt();
+        final XY gridSize = new XY(buffer.getInt(), buffer.getInt());
+        final boolean trace = buffer.get() != 0;
+
+        final Partition partition = new Partition(readInts(buffer), readInts(buffer));
+
+        final int obstacleCount = buffer.getInt();
+        final List<Rectangle> obstacles = new ArrayList<>(obstacleCount);
+        for (int obstacle = 0; obstacle < obstacleCount; obstacle++) {
+            obstacles.add(readRectangle(buffer));
+        }
+
+        final int queryCount = buffer.getInt();
+        final Map<String, Query> queries = new LinkedHashMap<>();
+        for (int query = 0; query < queryCount; query++) {
+            final String key = readString(buffer);
+            queries.put(key, new Query(readRectangle(buffer)));
+        }
+
+        final String[] names = new String[buffer.getInt()];
+        for (int row = 0; row < names.length; row++) {
+            names[row] = readString(buffer);
+        }
+
+        final Population population = new Population(parameters, buffer.getInt(buffer.position()));
+        readPopulation(buffer, population, id -> names[id]);
+
+        return new Scenario(
+            name, parameters, ticks, gridSize, trace, partition, obstacles, queries,
+            population.asInfoList()
+        );
+    }
+
+    /**
+     * Returns the length in bytes of the block at the given index as stated by its header.
+     *
+     * @param buffer The buffer holding at least the header of the block.
+     * @param index The index the block starts at.
+     * @return The length of the block.
+     */
+    static long getBlockLength(ByteBuffer buffer, int index) {
+        return BLOCK_HEADER_SIZE
+            + (long) buffer.getInt(index) * RECORD_SIZE
+            + buffer.getInt(index + 2 * Integer.BYTES);
+    }
+
+    /**
+     * Appends the persons of a block to the given population.
+     *
+     * @param buffer The buffer positioned at the block, which is left after the block.
+     * @param population The population to append the persons to.
+     * @param names The names of the persons by their ids.
+     */
+    static void readPopulation(ByteBuffer buffer, Population population, IntFunction<String> names) {
+        final int count = buffer.getInt();
+        final int seedBytes = buffer.getInt(buffer.position() + Integer.BYTES);
+        final Map<Integer, byte[]> seeds = readSeeds(buffer, count);
+        final byte[] digest = new byte[Sha256.LENGTH];
+        for (int row = 0; row < count; row++) {
+            final int id = buffer.getInt();
+            final int x = buffer.getInt();
+            final int y = buffer.getInt();
+            final Direction direction = DIRECTIONS[buffer.get()];
+            final InfectionState.State state = STATES[buffer.get()];
+            final int inStateSince = buffer.getInt();
+            buffer.get(digest);
+            // the population copies the digest, so we may reuse the array
+            population.add(id, names.apply(id), x, y, seeds.getOrDefault(row, digest), state, inStateSince, direction);
+        }
+        buffer.position(buffer.position() + seedBytes);
+    }
+
+    static void writeTraceEntry(ChannelWriter writer, TraceEntry entry) throws IOException {
+        final List<PersonInfo> infos = entry.getPopulation();
+        writer.putInt(infos.size());
+        int seeds = 0;
+        int seedBytes = 0;
+        for (PersonInfo info : infos) {
+            if (info.getSeed().length != Sha256.LENGTH) {
+                seedBytes += 2 * Integer.BYTES + info.getSeed().length;
+                seeds++;
+            }
+        }
+        writer.putInt(seeds);
+        writer.putInt(seedBytes);
+
+        // the persons of an entry are ordered by their ids
+        int id = 0;
+        for (PersonInfo info : infos) {
+            writeRecord(
+                writer,
+                id,
+                info.getPosition().getX(),
+                info.getPosition().getY(),
+                info.getDirection(),
+                info.getInfectionState().getState(),
+                info.getInfectionState().getInStateSince(),
+                info.getSeed().length == Sha256.LENGTH ? info.getSeed() : null
+            );
+            id++;
+        }
+        int row = 0;
+        for (PersonInfo info : infos) {
+            if (info.getSeed().length != Sha256.LENGTH) {
+                writeSeed(writer, row, info.getSeed());
+            }
+            row++;
+        }
+    }
+
+    static TraceEntry readTraceEntry(ByteBuffer buffer, Population names) {
+        final int count = buffer.getInt();
+        final Map<Integer, byte[]> seeds = readSeeds(buffer, count);
+        final List<PersonInfo> infos = new ArrayList<>(count);
+        for (int row = 0; row < count; row++) {
+            final int id = buffer.getInt();
+            final XY position = new XY(buffer.getInt(), buffer.getInt());
+            final Direction direction = DIRECTIONS[buffer.get()];
+            final InfectionState.State state = STATES[buffer.get()];
+            final InfectionState infectionState = new InfectionState(state, buffer.getInt());
+            byte[] seed = seeds.get(row);
+            if (seed == null) {
+                seed = new byte[Sha256.LENGTH];
+                buffer.get(seed);
+            } else {
+                buffer.position(buffer.position() + Sha256.LENGTH);
+            }
+            infos.add(new PersonInfo(names.getName(id), position, seed, infectionState, direction));
+        }
+        return new TraceEntry(infos);
+    }
+
+    static void writeStatistics(ChannelWriter writer, Map<String, List<Statistics>> statistics) throws IOException {
+        writer.putInt(statistics.size());
+        for (Map.Entry<String, List<Statistics>> query : statistics.entrySet()) {
+            writer.putString(query.getKey());
+            writer.putInt(query.getValue().size());
+            for (Statistics entry : query.getValue()) {
+                writer.putLong(entry.getSusceptible());
+                writer.putLong(entry.getInfected());
+                writer.putLong(entry.getInfectious());
+                writer.putLong(entry.getRecovered());
+            }
+        }
+    }
+
+    static Map<String, List<Statistics>> readStatistics(ByteBuffer buffer) {
+        final int queryCount = buffer.getInt();
+        final Map<String, List<Statistics>> statistics = new LinkedHashMap<>();
+        for (int query = 0; query < queryCount; query++) {
+            final String key = readString(buffer);
+            final int entries = buffer.getInt();
+            // the count is only trusted as far as the buffer holds entries
+            final List<Statistics> values = new ArrayList<>(Math.min(entries, buffer.remaining() / (4 * Long.BYTES)));
+            for (int entry = 0; entry < entries; entry++) {
+                values.add(new Statistics(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()));
+            }
+            statistics.put(key, values);
+        }
+        return statistics;
+    }
+
+    private static void writeRecord(
+        ChannelWriter writer, int id, int x, int y, Direction direction,
+        InfectionState.State state, int inStateSince, byte[] digest
+    ) throws IOException {
+        writer.putInt(id);
+        writer.putInt(x);
+        writer.putInt(y);
+        writer.putByte((byte) direction.ordinal());
+        writer.putByte((byte) state.ordinal());
+        writer.putInt(inStateSince);
+        // persons holding a seed of another length have it stored after the records
+        writer.putBytes(digest != null ? digest : new byte[Sha256.LENGTH], 0, Sha256.LENGTH);
+    }
+
+    private static int writeSeed(ChannelWriter writer, int row, byte[] seed) throws IOException {
+        writer.putInt(row);
+        writer.putInt(seed.length);
+        writer.putBytes(seed, 0, seed.length);
+        return 2 * Integer.BYTES + seed.length;
+    }
+
+    /**
+     * Reads the seeds of a block, leaving the buffer at the first record.
+     */
+    private static Map<Integer, byte[]> readSeeds(ByteBuffer buffer, int count) {
+        final int seedCount = buffer.getInt();
+        buffer.getInt();
+        final Map<Integer, byte[]> seeds = new HashMap<>();
+        if (seedCount > 0) {
+            final int records = buffer.position();
+            buffer.position(records + count * RECORD_SIZE);
+            for (int seed = 0; seed < seedCount; seed++) {
+                final int row = buffer.getInt();
+                final byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                seeds.put(row, bytes);
+            }
+            buffer.position(records);
+        }
+        return seeds;
+    }
+
+    private static void writeInts(ChannelWriter writer, List<Integer> values) throws IOException {
+        writer.putInt(values.size());
+        for (int value : values) {
+            writer.putInt(value);
+        }
+    }
+
+    private static List<Integer> readInts(ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        final List<Integer> values = new ArrayList<>(count);
+        for (int value = 0; value < count; value++) {
+            values.add(buffer.getInt());
+        }
+        return values;
+    }
+
+    private static void writeRectangle(ChannelWriter writer, Rectangle rectangle) throws IOException {
+        writer.putInt(rectangle.getTopLeft().getX());
+        writer.putInt(rectangle.getTopLeft().getY());
+        writer.putInt(rectangle.getSize().getX());
+        writer.putInt(rectangle.getSize().getY());
+    }
+
+    private static Rectangle readRectangle(ByteBuffer buffer) {
+        final XY topLeft = new XY(buffer.getInt(), buffer.getInt());
+        return new Rectangle(topLeft, new XY(buffer.getInt(), buffer.getInt()));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The entries of a trace, decoded from the mapped file whenever they are accessed.
+     */
+    private static final class Trace extends AbstractList<TraceEntry> implements RandomAccess {
+        private final Population names;
+        private final List<MappedByteBuffer> windows;
+        private final int[] windowOf;
+        private final int[] offsets;
+
+        private Trace(Population names, List<MappedByteBuffer> windows, int[] windowOf, int[] offsets) {
+            this.names = names;
+            this.windows = windows;
+            this.windowOf = windowOf;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public TraceEntry get(int index) {
+            if (index < 0 || index >= this.offsets.length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            // every access works on a buffer of its own, so the trace may be read concurrently
+            final ByteBuffer buffer = this.windows.get(this.windowOf[index]).duplicate();
+            buffer.position(this.offsets[index]);
+            return readTraceEntry(buffer, this.names);
+        }
+
+        @Override
+        public int size() {
+            return this.offsets.length;
+        }
+    }
+}
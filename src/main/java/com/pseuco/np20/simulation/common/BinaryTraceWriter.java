@@ -0,0 +1,74 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+
+
+/**
+ * Streams an output to a binary file while the simulation is running.
+ *
+ * <p>
+ * The number of trace entries is filled in when the simulation has finished. The resulting
+ * file is identical to the file obtained by <em>BinaryFormat.writeOutput</em>.
+ * </p>
+ */
+public class BinaryTraceWriter implements TraceWriter {
+    private final ChannelWriter writer;
+
+    private final long traceStart;
+    private int entries = 0;
+
+    private boolean finished = false;
+
+    /**
+     * Constructs a binary trace writer and writes the scenario to the given file.
+     *
+     * @param file The file to write the output to.
+     * @param scenario The scenario the output is computed for.
+     * @throws IOException If the output cannot be written.
+     */
+    public BinaryTraceWriter(File file, Scenario scenario) throws IOException {
+        this.writer = new ChannelWriter(file);
+        try {
+            BinaryFormat.writeHeader(this.writer, BinaryFormat.OUTPUT);
+            BinaryFormat.writeScenario(this.writer, scenario);
+            this.traceStart = this.writer.position();
+            this.writer.putInt(0);
+        } catch (IOException error) {
+            this.writer.close();
+            throw error;
+        }
+    }
+
+    @Override
+    public synchronized void write(TraceEntry entry) {
+        try {
+            BinaryFormat.writeTraceEntry(this.writer, entry);
+            this.entries++;
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    @Override
+    public synchronized void finish(Map<String, List<Statistics>> statistics) throws IOException {
+        this.writer.putIntAt(this.traceStart, this.entries);
+        BinaryFormat.writeStatistics(this.writer, statistics);
+        this.finished = true;
+        this.writer.close();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!this.finished) {
+            this.writer.close();
+        }
+    }
+}
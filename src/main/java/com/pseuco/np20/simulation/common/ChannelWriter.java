@@ -0,0 +1,173 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Writes big-endian binary data to a file through a buffer.
+ *
+ * <p>
+ * Values already written may be overwritten, e.g., to fill in counts which are only known
+ * at the end. While the writer is holding, everything stays in the buffer, which grows as
+ * required, so a part whose length is only known at its end reaches the file as a whole.
+ * </p>
+ */
+final class ChannelWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean holding = false;
+
+    /**
+     * The number of bytes already handed to the channel.
+     */
+    private long flushed = 0;
+
+    /**
+     * Constructs a writer replacing the content of the given file.
+     *
+     * @param file The file to write to.
+     * @throws IOException If the file cannot be opened.
+     */
+    ChannelWriter(File file) throws IOException {
+        this.channel = FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        );
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return The number of bytes written so far.
+     */
+    long position() {
+        return this.flushed + this.buffer.position();
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (this.buffer.remaining() >= bytes) {
+            return;
+        }
+        if (!this.holding) {
+            this.flush();
+            return;
+        }
+        final ByteBuffer grown = ByteBuffer.allocate(
+            Math.max(2 * this.buffer.capacity(), this.buffer.position() + bytes)
+        );
+        this.buffer.flip();
+        grown.put(this.buffer);
+        this.buffer = grown;
+    }
+
+    /**
+     * Keeps everything written from now on in the buffer until <em>release</em> is called.
+     *
+     * @throws IOException If the data written before cannot be written.
+     */
+    void hold() throws IOException {
+        this.flush();
+        this.holding = true;
+    }
+
+    /**
+     * Writes out everything written since <em>hold</em> has been called.
+     *
+     * @throws IOException If the data cannot be written.
+     */
+    void release() throws IOException {
+        this.holding = false;
+        this.flush();
+        if (this.buffer.capacity() > BUFFER_SIZE) {
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    void putByte(byte value) throws IOException {
+        this.ensureRemaining(Byte.BYTES);
+        this.buffer.put(value);
+    }
+
+    void putInt(int value) throws IOException {
+        this.ensureRemaining(Integer.BYTES);
+        this.buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        this.ensureRemaining(Long.BYTES);
+        this.buffer.putLong(value);
+    }
+
+    void putBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > BUFFER_SIZE && !this.holding) {
+            this.flush();
+            final ByteBuffer wrapped = ByteBuffer.wrap(bytes, offset, length);
+            while (wrapped.hasRemaining()) {
+                this.flushed += this.channel.write(wrapped);
+            }
+            return;
+        }
+        this.ensureRemaining(length);
+        this.buffer.put(bytes, offset, length);
+    }
+
+    void putString(String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.putInt(bytes.length);
+        this.putBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Overwrites an integer which has been written before.
+     *
+     * @param position The position the integer has been written at.
+     * @param value The new value of the integer.
+     * @throws IOException If the integer cannot be written.
+     */
+    void putIntAt(long position, int value) throws IOException {
+        // integers never straddle a flush, so they are either still buffered or written out
+        if (position >= this.flushed) {
+            this.buffer.putInt((int) (position - this.flushed), value);
+            return;
+        }
+        final ByteBuffer bytes = ByteBuffer.allocate(Integer.BYTES).putInt(0, value);
+        while (bytes.hasRemaining()) {
+            this.channel.write(bytes, position + bytes.position());
+        }
+    }
+
+    void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.flushed += this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Writes out the buffer and forces everything written so far to the storage device.
+     *
+     * @throws IOException If the data cannot be written.
+     */
+    void force() throws IOException {
+        this.flush();
+        this.channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+
+
+/**
+ * The state of a simulation after some number of ticks, from which it can be resumed.
+ *
+ * <p>
+ * Checkpoints are written by a <em>CheckpointWriter</em>. A checkpoint file is a journal of
+ * records in the binary format, see <em>BinaryFormat</em>, laid out as follows:
+ * </p>
+ *
+ * <pre>
+ * file   := magic:int version:int kind:byte name:string persons:int record*
+ * record := kind:byte length:int (trace | state)
+ * trace  := block
+ * state  := tick:int statistics block
+ * </pre>
+ *
+ * <p>
+ * Trace records hold the trace entries in order. State records hold the number of ticks
+ * simulated, the statistics entries since the previous state record, and the persons
+ * ordered by their ids. Reading a checkpoint yields the last complete state record, so a
+ * file whose writing has been interrupted can still be resumed from. A record which ends
+ * early or whose content does not match its length is taken as the interrupted end of the
+ * file.
+ * </p>
+ */
+public final class Checkpoint {
+    private final int tick;
+    private final Population population;
+    private final Map<String, List<Statistics>> statistics;
+    private final List<TraceEntry> trace;
+
+    private Checkpoint(
+        int tick, Population population, Map<String, List<Statistics>> statistics, List<TraceEntry> trace
+    ) {
+        this.tick = tick;
+        this.population = population;
+        this.statistics = statistics;
+        this.trace = trace;
+    }
+
+    /**
+     * Returns the number of ticks simulated up to the checkpoint.
+     *
+     * @return The number of ticks simulated up to the checkpoint.
+     */
+    public int getTick() {
+        return this.tick;
+    }
+
+    /**
+     * Returns the population after the ticks simulated, ordered by the ids of the persons.
+     *
+     * @return The population after the ticks simulated.
+     */
+    public Population getPopulation() {
+        return this.population;
+    }
+
+    /**
+     * Returns the statistics entries up to and including the checkpoint.
+     *
+     * @return The statistics entries up to and including the checkpoint.
+     */
+    public Map<String, List<Statistics>> getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Returns the trace entries up to and including the checkpoint.
+     *
+     * @return The trace entries or an empty list if the scenario is not traced.
+     */
+    public List<TraceEntry> getTrace() {
+        return this.trace;
+    }
+
+    /**
+     * Reads the last complete checkpoint from the given file.
+     *
+     * @param file The file to read the checkpoint from.
+     * @param scenario The scenario the checkpoint has been written for.
+     * @return The last complete checkpoint in the file.
+     * @throws IOException If the file cannot be read or holds no checkpoint of the scenario.
+     */
+    public static Checkpoint read(File file, Scenario scenario) throws IOException {
+        final Population initial = Population.of(scenario.getParameters(), scenario.getPopulation());
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            final byte[] header = new byte[2 * Integer.BYTES + Byte.BYTES];
+            try {
+                input.readFully(header);
+            } catch (EOFException error) {
+                throw new IOException("not a binary file");
+            }
+            BinaryFormat.readHeader(ByteBuffer.wrap(header), BinaryFormat.CHECKPOINT);
+            final byte[] name = new byte[input.readInt()];
+            input.readFully(name);
+            if (!new String(name, StandardCharsets.UTF_8).equals(scenario.getName()) || input.readInt() != initial.size()) {
+                throw new IOException("checkpoint has not been written for scenario \"" + scenario.getName() + "\"");
+            }
+
+            final List<byte[]> traceRecords = new ArrayList<>();
+            final Map<String, List<Statistics>> statistics = new LinkedHashMap<>();
+            // the trace may lag behind the states, so we keep the states it has not caught up with
+            final Deque<byte[]> states = new ArrayDeque<>();
+
+            while (true) {
+                final byte kind;
+                final byte[] payload;
+                try {
+                    kind = input.readByte();
+                    final int length = input.readInt();
+                    if (length < 0) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    input.readFully(payload);
+                } catch (EOFException error) {
+                    // the last record has not been written completely
+                    break;
+                }
+                if (kind == CheckpointWriter.TRACE_RECORD) {
+                    if (!isBlock(ByteBuffer.wrap(payload))) {
+                        break;
+                    }
+                    traceRecords.add(payload);
+                } else if (kind == CheckpointWriter.STATE_RECORD) {
+                    final Map<String, List<Statistics>> delta = readState(payload);
+                    if (delta == null) {
+                        break;
+                    }
+                    for (Map.Entry<String, List<Statistics>> query : delta.entrySet()) {
+                        statistics.computeIfAbsent(query.getKey(), key -> new ArrayList<>()).addAll(query.getValue());
+                    }
+                    states.addLast(payload);
+                } else {
+                    throw new IOException("unknown checkpoint record kind " + kind);
+                }
+                while (states.size() > 1 && isComplete(scenario, getTick(secondOf(states)), traceRecords)) {
+                    states.removeFirst();
+                }
+            }
+
+            while (!states.isEmpty() && !isComplete(scenario, getTick(states.getLast()), traceRecords)) {
+                states.removeLast();
+            }
+            if (states.isEmpty()) {
+                throw new IOException("checkpoint holds no complete state");
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(states.getLast());
+            final int tick = buffer.getInt();
+            BinaryFormat.readStatistics(buffer);
+
+            for (String query : scenario.getQueries().keySet()) {
+                final List<Statistics> entries = statistics.get(query);
+                if (entries == null || entries.size() < tick + 1) {
+                    throw new IOException("checkpoint lacks statistics of query \"" + query + "\"");
+                }
+                // later states may have been incomplete
+                statistics.put(query, new ArrayList<>(entries.subList(0, tick + 1)));
+            }
+
+            final List<TraceEntry> trace = new ArrayList<>();
+            if (scenario.getTrace()) {
+                for (int entry = 0; entry <= tick; entry++) {
+                    trace.add(BinaryFormat.readTraceEntry(ByteBuffer.wrap(traceRecords.get(entry)), initial));
+                }
+            }
+
+            final Population population = new Population(scenario.getParameters(), initial.size());
+            BinaryFormat.readPopulation(buffer, population, initial::getName);
+            if (population.size() != initial.size()) {
+                throw new IOException("checkpoint holds " + population.size() + " instead of " + initial.size() + " persons");
+            }
+
+            return new Checkpoint(tick, population, statistics, trace);
+        }
+    }
+
+    /**
+     * Returns whether the remainder of the buffer is exactly one block.
+     */
+    private static boolean isBlock(ByteBuffer buffer) {
+        return buffer.remaining() >= 3 * Integer.BYTES
+            && BinaryFormat.getBlockLength(buffer, buffer.position()) == buffer.remaining();
+    }
+
+    /**
+     * Returns the statistics of a state record or <em>null</em> if the record is malformed.
+     */
+    private static Map<String, List<Statistics>> readState(byte[] state) {
+        final ByteBuffer buffer = ByteBuffer.wrap(state);
+        try {
+            buffer.getInt();
+            final Map<String, List<Statistics>> statistics = BinaryFormat.readStatistics(buffer);
+            return isBlock(buffer) ? statistics : null;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | NegativeArraySizeException error) {
+            return null;
+        }
+    }
+
+    private static int getTick(byte[] state) {
+        return ByteBuffer.wrap(state).getInt(0);
+    }
+
+    private static byte[] secondOf(Deque<byte[]> states) {
+        final Iterator<byte[]> iterator = states.iterator();
+        iterator.next();
+        return iterator.next();
+    }
+
+    /**
+     * Returns whether the trace entries of the state after the given tick have been written.
+     */
+    private static boolean isComplete(Scenario scenario, int tick, List<byte[]> traceRecords) {
+        return !scenario.getTrace() || traceRecords.size() > tick;
+    }
+}
@@ -0,0 +1,167 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+
+
+/**
+ * Writes checkpoints of a running simulation to a file, see <em>Checkpoint</em>.
+ *
+ * <p>
+ * Everything is written by a background thread, so the simulation only has to hand over
+ * snapshots of its state and never waits for the file. Trace entries and statistics are
+ * journaled incrementally, a checkpoint only adds the statistics since the previous one and
+ * the state of the persons. Every checkpoint is forced to the storage device once written.
+ * </p>
+ *
+ * <p>
+ * Errors of the background thread are reported when the writer is closed.
+ * </p>
+ */
+public class CheckpointWriter implements Closeable {
+    static final byte TRACE_RECORD = 1;
+    static final byte STATE_RECORD = 2;
+
+    private final ChannelWriter writer;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile IOException error = null;
+
+    /**
+     * Constructs a checkpoint writer replacing the content of the given file.
+     *
+     * @param file The file to write the checkpoints to.
+     * @param scenario The scenario which is simulated.
+     * @throws IOException If the file cannot be written.
+     */
+    public CheckpointWriter(File file, Scenario scenario) throws IOException {
+        this.writer = new ChannelWriter(file);
+        try {
+            BinaryFormat.writeHeader(this.writer, BinaryFormat.CHECKPOINT);
+            this.writer.putString(scenario.getName());
+            this.writer.putInt(scenario.getPopulation().size());
+        } catch (IOException error) {
+            this.writer.close();
+            throw error;
+        }
+    }
+
+    /**
+     * Journals the next trace entry.
+     *
+     * <p>
+     * Trace entries have to be handed over in order.
+     * </p>
+     *
+     * @param entry The next trace entry.
+     */
+    public void writeTrace(TraceEntry entry) {
+        this.submit(() -> {
+            final long start = this.startRecord(TRACE_RECORD);
+            BinaryFormat.writeTraceEntry(this.writer, entry);
+            this.finishRecord(start);
+        });
+    }
+
+    /**
+     * Writes a checkpoint.
+     *
+     * <p>
+     * The parts of the population are handed over to the writer and must not be modified
+     * afterwards. Together they have to hold every person exactly once.
+     * </p>
+     *
+     * @param tick The number of ticks simulated so far.
+     * @param parts The parts of the population after the given number of ticks.
+     * @param statistics The statistics entries since the previous checkpoint up to the given tick.
+     */
+    public void writeCheckpoint(int tick, List<Population> parts, Map<String, List<Statistics>> statistics) {
+        this.submit(() -> {
+            final Population population = new Population(parts.get(0).getParameters());
+            for (Population part : parts) {
+                for (int row = 0; row < part.size(); row++) {
+                    population.add(part, row);
+                }
+            }
+            population.sortById();
+
+            final long start = this.startRecord(STATE_RECORD);
+            this.writer.putInt(tick);
+            BinaryFormat.writeStatistics(this.writer, statistics);
+            BinaryFormat.writePopulation(this.writer, population);
+            this.finishRecord(start);
+            this.writer.force();
+        });
+    }
+
+    private long startRecord(byte kind) throws IOException {
+        // the record is only written out once its length has been filled in
+        this.writer.hold();
+        this.writer.putByte(kind);
+        final long start = this.writer.position();
+        this.writer.putInt(0);
+        return start;
+    }
+
+    private void finishRecord(long start) throws IOException {
+        this.writer.putIntAt(start, (int) (this.writer.position() - start - Integer.BYTES));
+        this.writer.release();
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    private void submit(Write write) {
+        this.executor.execute(() -> {
+            if (this.error != null) {
+                return;
+            }
+            try {
+                write.run();
+            } catch (IOException error) {
+                this.error = error;
+            } catch (RuntimeException error) {
+                this.error = new IOException("checkpoint could not be written", error);
+            }
+        });
+    }
+
+    /**
+     * Waits for all pending writes and closes the file.
+     *
+     * @throws IOException If a checkpoint could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        this.executor.shutdown();
+        try {
+            while (!this.executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                continue;
+            }
+        } catch (InterruptedException interrupt) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing checkpoints", interrupt);
+        } finally {
+            this.writer.close();
+        }
+        if (this.error != null) {
+            throw this.error;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.pseuco.np20.simulation.common;
 
 import java.util.List;
 
+import com.pseuco.np20.model.ObstacleMask;
 import com.pseuco.np20.model.Rectangle;
 
 
@@ -27,10 +28,29 @@ public interface Context {
      */
     List<Rectangle> getObstacles();
 
+    /**
+     * Returns a bitmap of the cells covered by the obstacles returned by <em>getObstacles</em>.
+     *
+     * @return A bitmap of the cells covered by the obstacles.
+     */
+    ObstacleMask getObstacleMask();
+
     /**
      * Returns all persons to be considered when simulating the person.
      *
      * @return All persons to be considered when simulating the person.
      */
     List<Person> getPopulation();
+
+    /**
+     * Returns the cells occupied by the population and its ghosts.
+     *
+     * <p>
+     * The occupancy has to contain the positions and ghost positions of all persons returned
+     * by <em>getPopulation</em>. Persons keep it up to date while they are simulated.
+     * </p>
+     *
+     * @return The cells occupied by the population and its ghosts.
+     */
+    Occupancy getOccupancy();
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+
+
+/**
+ * Streams an output to a JSON file while the simulation is running.
+ *
+ * <p>
+ * The scenario is written right away and every trace entry is written as soon as it is
+ * complete. Hence, only the trace entries of the ticks currently being simulated have to
+ * be kept in memory. The statistics are written when the simulation has finished. The
+ * resulting file is identical to the file obtained by serializing the whole <em>Output</em>
+ * with the same object mapper.
+ * </p>
+ */
+public class JsonTraceWriter implements TraceWriter {
+    private final JsonGenerator generator;
+
+    private boolean finished = false;
+
+    /**
+     * Constructs a JSON trace writer and writes the scenario to the given file.
+     *
+     * @param objectMapper The object mapper to serialize the output with.
+     * @param file The file to write the output to.
+     * @param scenario The scenario the output is computed for.
+     * @throws IOException If the output cannot be written.
+     */
+    public JsonTraceWriter(ObjectMapper objectMapper, File file, Scenario scenario) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(file, JsonEncoding.UTF8);
+        this.generator.writeStartObject();
+        this.generator.writeFieldName("scenario");
+        this.generator.writeObject(scenario);
+        this.generator.writeFieldName("trace");
+        this.generator.writeStartArray();
+    }
+
+    /**
+     * Writes the next entry of the trace.
+     *
+     * <p>
+     * The entries have to be written in the order of the ticks they have been recorded at.
+     * </p>
+     *
+     * @param entry The entry to write.
+     */
+    @Override
+    public synchronized void write(TraceEntry entry) {
+        try {
+            this.generator.writeObject(entry);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    /**
+     * Writes the statistics and completes the output.
+     *
+     * @param statistics The computed statistics for each tick.
+     * @throws IOException If the output cannot be written.
+     */
+    @Override
+    public synchronized void finish(Map<String, List<Statistics>> statistics) throws IOException {
+        this.generator.writeEndArray();
+        this.generator.writeFieldName("stats");
+        this.generator.writeObject(statistics);
+        this.generator.writeEndObject();
+        this.finished = true;
+        this.generator.close();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!this.finished) {
+            this.generator.close();
+        }
+    }
+}
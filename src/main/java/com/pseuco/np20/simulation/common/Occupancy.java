@@ -0,0 +1,119 @@
+package com.pseuco.np20.simulation.common;
+
+import java.util.Arrays;
+
+import com.pseuco.np20.model.Rectangle;
+
+
+/**
+ * Keeps track of the cells occupied by the persons and their ghosts within some area.
+ *
+ * <p>
+ * For every cell of the area, the number of positions and ghost positions located on that
+ * cell is counted. Hence, whether a person would bump into another person can be checked
+ * in constant time instead of comparing the target cell with the whole population.
+ * </p>
+ */
+public class Occupancy {
+    private final Rectangle area;
+
+    private final int minX;
+    private final int minY;
+    private final int width;
+
+    private final int[] counts;
+
+    /**
+     * Constructs an empty occupancy for the given area.
+     *
+     * <p>
+     * The area has to contain every position and ghost position of the persons that are
+     * added to the occupancy.
+     * </p>
+     *
+     * @param area The area to keep track of.
+     */
+    public Occupancy(Rectangle area) {
+        this.area = area;
+        this.minX = area.getTopLeft().getX();
+        this.minY = area.getTopLeft().getY();
+        this.width = area.getSize().getX();
+        this.counts = new int[area.getSize().getX() * area.getSize().getY()];
+    }
+
+    /**
+     * Returns the area the occupancy keeps track of.
+     *
+     * @return The area the occupancy keeps track of.
+     */
+    public Rectangle getArea() {
+        return this.area;
+    }
+
+    private boolean contains(int x, int y) {
+        return (
+            this.minX <= x && x < this.area.getBottomRight().getX()
+            && this.minY <= y && y < this.area.getBottomRight().getY()
+        );
+    }
+
+    private int indexOf(int x, int y) {
+        if (!this.contains(x, y)) {
+            throw new IllegalStateException("cell (" + x + ", " + y + ") is outside of " + this.area);
+        }
+        return (y - this.minY) * this.width + (x - this.minX);
+    }
+
+    /**
+     * Clears the occupancy and adds the positions and ghost positions of the population.
+     *
+     * @param population The population occupying the area.
+     */
+    public void rebuild(Population population) {
+        Arrays.fill(this.counts, 0);
+        for (int index = 0; index < population.size(); index++) {
+            this.add(population.getX(index), population.getY(index));
+            if (population.hasGhost(index)) {
+                this.add(population.getGhostX(index), population.getGhostY(index));
+            }
+        }
+    }
+
+    /**
+     * Marks the given cell as occupied once more.
+     *
+     * @param x The <em>x</em>-coordinate of the cell.
+     * @param y The <em>y</em>-coordinate of the cell.
+     */
+    public void add(int x, int y) {
+        this.counts[this.indexOf(x, y)]++;
+    }
+
+    /**
+     * Removes one occupation of the given cell.
+     *
+     * @param x The <em>x</em>-coordinate of the cell.
+     * @param y The <em>y</em>-coordinate of the cell.
+     */
+    public void remove(int x, int y) {
+        this.counts[this.indexOf(x, y)]--;
+    }
+
+    /**
+     * Returns whether a person or a ghost is located on the given cell.
+     *
+     * <p>
+     * Cells outside of the area are never occupied.
+     * </p>
+     *
+     * @param x The <em>x</em>-coordinate of the cell.
+     * @param y The <em>y</em>-coordinate of the cell.
+     * @return Whether a person or a ghost is located on the given cell.
+     */
+    public boolean isOccupied(int x, int y) {
+        if (!this.contains(x, y)) {
+            return false;
+        }
+        return this.counts[(y - this.minY) * this.width + (x - this.minX)] > 0;
+    }
+}
@@ -1,19 +1,20 @@
 package com.pseuco.np20.simulation.common;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Comparator;
 
 import com.pseuco.np20.model.InfectionState;
 import com.pseuco.np20.model.Parameters;
 import com.pseuco.np20.model.PersonInfo;
-import com.pseuco.np20.model.Direction;
-import com.pseuco.np20.model.Rectangle;
 import com.pseuco.np20.model.XY;
 
 
 /**
  * Represents a person and contains the necessary simulation functionality.
+ *
+ * <p>
+ * The state of the person is stored in a row of a <em>Population</em>, hence, a person is
+ * merely a view onto that row.
+ * </p>
  */
 public class Person {
     /**
@@ -26,68 +27,10 @@ public class Person {
         }
     }
 
-    private static class RNG {
-        private final MessageDigest messageDigest;
-
-        private final Parameters parameters;
-
-        private byte[] digest;
-
-        public RNG(byte[] seed, Parameters parameters) {
-            try {
-                this.messageDigest = MessageDigest.getInstance("SHA-256");
-            } catch (NoSuchAlgorithmException error) {
-                throw new RuntimeException(error);
-            }
-            this.parameters = parameters;
-            this.digest = seed;
-        }
-
-        public void tick() {
-            this.digest = messageDigest.digest(this.digest);
-        }
-
-        public byte[] getDigest() {
-            return this.digest;
-        }
-
-        public int getUnsignedByte(int position) {
-            return this.digest[position] & 0xFF;
-        }
-
-        public boolean isCoughing() {
-            return this.getUnsignedByte(0) < this.parameters.getCoughThreshold();
-        }
-
-        public boolean isBreathing() {
-            return this.getUnsignedByte(1) < this.parameters.getBreathThreshold();
-        }
-
-        public Direction getAcceleration() {
-            final int index = this.getUnsignedByte(2) / this.parameters.getAccelerationDivisor();
-            if (index >= Direction.values().length) {
-                return Direction.NONE;
-            }
-            return Direction.values()[index];
-        }
-    }
-
-    private final int id;
+    private final Population population;
+    private final int index;
 
     private final Context context;
-    private final Parameters parameters;
-
-    private final RNG rng;
-
-    private String name = "";
-
-    private XY position;
-    private XY ghostPosition = null;
-
-    private Direction direction = Direction.NONE;
-
-    private InfectionState.State state = InfectionState.State.SUSCEPTIBLE;
-    private int inStateSince = 0;
 
     /**
      * Constructs a person with the given information.
@@ -98,15 +41,22 @@ public class Person {
      * @param info The remaining information about the person.
      */
     public Person(int id, Context context, Parameters parameters, PersonInfo info) {
-        this.id = id;
+        this.population = new Population(parameters, 1);
+        this.index = this.population.add(id, info);
+        this.context = context;
+    }
+
+    /**
+     * Constructs a person acting as a view onto a row of a population.
+     *
+     * @param population The population the person is stored in.
+     * @param index The row of the person.
+     * @param context The context the person is simulated in.
+     */
+    Person(Population population, int index, Context context) {
+        this.population = population;
+        this.index = index;
         this.context = context;
-        this.parameters = parameters;
-        this.rng = new RNG(info.getSeed(), this.parameters);
-        this.position = info.getPosition();
-        this.direction = info.getDirection();
-        this.state = info.getInfectionState().getState();
-        this.inStateSince = info.getInfectionState().getInStateSince();
-        this.name = info.getName();
     }
 
     /**
@@ -115,7 +65,7 @@ public class Person {
      * @return The id of the person.
      */
     public int getId() {
-        return this.id;
+        return this.population.getId(this.index);
     }
 
     /**
@@ -124,7 +74,7 @@ public class Person {
      * @return The name of the person.
      */
     public String getName() {
-        return this.name;
+        return this.population.getName(this.index);
     }
 
     /**
@@ -133,7 +83,7 @@ public class Person {
      * @return The current position of the person.
      */
     public XY getPosition() {
-        return this.position;
+        return new XY(this.population.getX(this.index), this.population.getY(this.index));
     }
 
     /**
@@ -142,7 +92,10 @@ public class Person {
      * @return The position of the person's ghost if it has one.
      */
     public XY getGhostPosition() {
-        return this.ghostPosition;
+        if (!this.hasGhost()) {
+            return null;
+        }
+        return new XY(this.population.getGhostX(this.index), this.population.getGhostY(this.index));
     }
 
     /**
@@ -151,7 +104,7 @@ public class Person {
      * @return Whether the person has a ghost.
      */
     public boolean hasGhost() {
-        return this.ghostPosition != null;
+        return this.population.hasGhost(this.index);
     }
 
     /**
@@ -160,17 +113,7 @@ public class Person {
      * @return The current infection state of the person.
      */
     public InfectionState.State getState() {
-        return this.state;
-    }
-
-    /**
-     * Sets the infection state of the person and resets the <em>inStateSince</em>-counter.
-     *
-     * @param state The new state the person is in.
-     */
-    private void setState(InfectionState.State state) {
-        this.state = state;
-        this.inStateSince = 0;
+        return this.population.getState(this.index);
     }
 
     /**
@@ -179,7 +122,7 @@ public class Person {
      * @return Whether the person is susceptible.
      */
     public boolean isSusceptible() {
-        return this.state == InfectionState.State.SUSCEPTIBLE;
+        return this.population.isSusceptible(this.index);
     }
 
     /**
@@ -188,7 +131,7 @@ public class Person {
      * @return Whether the person is infected.
      */
     public boolean isInfected() {
-        return this.state == InfectionState.State.INFECTED;
+        return this.population.isInfected(this.index);
     }
 
     /**
@@ -197,7 +140,7 @@ public class Person {
      * @return Whether the person is infectious.
      */
     public boolean isInfectious() {
-        return this.state == InfectionState.State.INFECTIOUS;
+        return this.population.isInfectious(this.index);
     }
 
     /**
@@ -206,7 +149,7 @@ public class Person {
      * @return Whether the person has recovered.
      */
     public boolean isRecovered() {
-        return this.state == InfectionState.State.RECOVERED;
+        return this.population.isRecovered(this.index);
     }
 
     /**
@@ -215,7 +158,7 @@ public class Person {
      * @return Whether the person is breathing.
      */
     public boolean isBreathing() {
-        return this.rng.isBreathing();
+        return this.population.isBreathing(this.index);
     }
 
     /**
@@ -224,16 +167,14 @@ public class Person {
      * @return Whether the person is coughing.
      */
     public boolean isCoughing() {
-        return this.rng.isCoughing();
+        return this.population.isCoughing(this.index);
     }
 
     /**
      * Infects the person with the virus.
      */
     public void infect() {
-        if (this.isSusceptible()) {
-            this.setState(InfectionState.State.INFECTED);
-        }
+        this.population.infect(this.index);
     }
 
     /**
@@ -242,13 +183,7 @@ public class Person {
      * @return An info object based on the persons current state.
      */
     public PersonInfo getInfo() {
-        return new PersonInfo(
-            this.name,
-            this.position,
-            this.rng.getDigest(),
-            new InfectionState(this.state, this.inStateSince),
-            this.direction
-        );
+        return this.population.getInfo(this.index);
     }
 
     /**
@@ -258,68 +193,25 @@ public class Person {
      * @return The cloned person.
      */
     public Person clone(Context context) {
-        return new Person(this.id, context, this.parameters, this.getInfo());
+        return new Person(this.getId(), context, this.population.getParameters(), this.getInfo());
     }
 
     /**
      * Removes the ghost of the person.
      */
     public void bustGhost() {
-        this.ghostPosition = null;
+        this.population.bustGhost(this.index, this.context.getOccupancy());
     }
 
     /**
      * Simulates a tick on the person.
      */
     public void tick() {
-        this.rng.tick();
-
-        this.inStateSince++;
-
-        this.ghostPosition = this.position;
-
-        if (this.isInfected() && this.inStateSince >= this.parameters.getIncubationTime()) {
-            this.setState(InfectionState.State.INFECTIOUS);
-        } else if (this.isInfectious() && this.inStateSince >= this.parameters.getRecoveryTime()) {
-            this.setState(InfectionState.State.RECOVERED);
-        }
-
-        final Direction acceleration = this.rng.getAcceleration();
-        final XY velocity = this.direction.getVector().add(acceleration.getVector()).limit(-1, 1);
-        final XY position = this.position.add(velocity);
-
-        // check whether we would would bump into a wall
-        if (!this.context.getGrid().contains(position)) {
-            this.direction = Direction.NONE;
-            return;
-        }
-
-        // check whether we would bump into an obstacle
-        if (
-            this.context.getObstacles().stream().anyMatch(
-                (Rectangle rectangle) -> rectangle.contains(position)
-            )
-        ) {
-            this.direction = Direction.NONE;
-            return;
-        }
-
-        // check whether we would bump into another person
-        if (
-            this.context.getPopulation().stream().anyMatch(
-                (Person person) ->
-                    person.getPosition().equals(position)
-                    || (
-                        person.hasGhost()
-                        && person.getGhostPosition().equals(position)
-                    )
-            )
-        ) {
-            this.direction = Direction.NONE;
-            return;
-        }
-
-        this.direction = Direction.fromVector(velocity);
-        this.position = position;
+        this.population.tick(
+            this.index,
+            this.context.getGrid(),
+            this.context.getObstacleMask(),
+            this.context.getOccupancy()
+        );
     }
-}
\ No newline at end of file
+}
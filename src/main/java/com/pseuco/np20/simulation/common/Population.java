@@ -0,0 +1,889 @@
+package com.pseuco.np20.simulation.common;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.ObstacleMask;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.XY;
+
+
+/**
+ * A population stored as a struct of primitive arrays.
+ *
+ * <p>
+ * Every person occupies one row of the arrays. Simulating a tick on a row neither creates
+ * objects nor follows references, which keeps the hot loops of the simulation engines free
+ * of garbage and friendly to the caches. The RNG digests of all persons are stored in a
+ * single array with <em>32</em> bytes per row.
+ * </p>
+ *
+ * <p>
+ * Code that still needs objects can materialise a row as <em>PersonInfo</em> or obtain a
+ * <em>Person</em> acting as a view onto a row.
+ * </p>
+ */
+public class Population {
+    private static final int NO_GHOST = Integer.MIN_VALUE;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final InfectionState.State[] STATES = InfectionState.State.values();
+
+    private static final byte NONE = (byte) Direction.NONE.ordinal();
+    private static final byte SUSCEPTIBLE = (byte) InfectionState.State.SUSCEPTIBLE.ordinal();
+    private static final byte INFECTED = (byte) InfectionState.State.INFECTED.ordinal();
+    private static final byte INFECTIOUS = (byte) InfectionState.State.INFECTIOUS.ordinal();
+    private static final byte RECOVERED = (byte) InfectionState.State.RECOVERED.ordinal();
+
+    /**
+     * The direction resulting from a direction and an acceleration, indexed by their ordinals.
+     */
+    private static final Direction[][] HEADINGS = new Direction[DIRECTIONS.length][DIRECTIONS.length];
+
+    static {
+        for (Direction direction : DIRECTIONS) {
+            for (Direction acceleration : DIRECTIONS) {
+                HEADINGS[direction.ordinal()][acceleration.ordinal()] = Direction.fromVector(
+                    direction.getVector().add(acceleration.getVector()).limit(-1, 1)
+                );
+            }
+        }
+    }
+
+    private final Parameters parameters;
+
+    private int size = 0;
+
+    private int[] ids;
+    private String[] names;
+    private int[] xs;
+    private int[] ys;
+    private int[] ghostXs;
+    private int[] ghostYs;
+    private byte[] directions;
+    private byte[] states;
+    private int[] inStateSince;
+    private byte[] digests;
+
+    /**
+     * Seeds which do not have the length of a digest, only allocated if there are any.
+     */
+    private byte[][] seeds = null;
+
+    private QueryCounters counters = null;
+
+    private long[] sortKeys = new long[0];
+    private Population shadow = null;
+
+    /**
+     * Constructs an empty population.
+     *
+     * @param parameters The parameters of the simulation.
+     */
+    public Population(Parameters parameters) {
+        this(parameters, 16);
+    }
+
+    /**
+     * Constructs an empty population with room for the given number of persons.
+     *
+     * @param parameters The parameters of the simulation.
+     * @param capacity The number of persons to reserve room for.
+     */
+    public Population(Parameters parameters, int capacity) {
+        this.parameters = parameters;
+        this.allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        this.ids = new int[capacity];
+        this.names = new String[capacity];
+        this.xs = new int[capacity];
+        this.ys = new int[capacity];
+        this.ghostXs = new int[capacity];
+        this.ghostYs = new int[capacity];
+        this.directions = new byte[capacity];
+        this.states = new byte[capacity];
+        this.inStateSince = new int[capacity];
+        this.digests = new byte[capacity * Sha256.LENGTH];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.ids.length) {
+            return;
+        }
+        final int grown = Math.max(capacity, 2 * this.ids.length);
+        this.ids = Arrays.copyOf(this.ids, grown);
+        this.names = Arrays.copyOf(this.names, grown);
+        this.xs = Arrays.copyOf(this.xs, grown);
+        this.ys = Arrays.copyOf(this.ys, grown);
+        this.ghostXs = Arrays.copyOf(this.ghostXs, grown);
+        this.ghostYs = Arrays.copyOf(this.ghostYs, grown);
+        this.directions = Arrays.copyOf(this.directions, grown);
+        this.states = Arrays.copyOf(this.states, grown);
+        this.inStateSince = Arrays.copyOf(this.inStateSince, grown);
+        this.digests = Arrays.copyOf(this.digests, grown * Sha256.LENGTH);
+        if (this.seeds != null) {
+            this.seeds = Arrays.copyOf(this.seeds, grown);
+        }
+    }
+
+    /**
+     * Attaches counters which are updated whenever a person moves or changes its state.
+     *
+     * <p>
+     * The counters are not updated when persons are added or removed, they have to be
+     * rebuilt afterwards.
+     * </p>
+     *
+     * @param counters The counters to keep up to date.
+     */
+    public void setCounters(QueryCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Returns the parameters of the simulation.
+     *
+     * @return The parameters of the simulation.
+     */
+    public Parameters getParameters() {
+        return this.parameters;
+    }
+
+    /**
+     * Returns the number of persons.
+     *
+     * @return The number of persons.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all persons.
+     */
+    public void clear() {
+        if (this.seeds != null) {
+            Arrays.fill(this.seeds, 0, this.size, null);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Appends a person with the given information.
+     *
+     * @param id The id of the person.
+     * @param info The remaining information about the person.
+     * @return The row of the person.
+     */
+    public int add(int id, PersonInfo info) {
+        return this.add(
+            id,
+            info.getName(),
+            info.getPosition().getX(),
+            info.getPosition().getY(),
+            info.getSeed(),
+            info.getInfectionState().getState(),
+            info.getInfectionState().getInStateSince(),
+            info.getDirection()
+        );
+    }
+
+    /**
+     * Appends a person with the given attributes.
+     *
+     * <p>
+     * This allows to fill a population without creating <em>PersonInfo</em> objects, e.g.,
+     * while a scenario is being parsed.
+     * </p>
+     *
+     * @param id The id of the person.
+     * @param name The name of the person.
+     * @param x The <em>x</em>-coordinate of the position of the person.
+     * @param y The <em>y</em>-coordinate of the position of the person.
+     * @param seed The seed (used for the RNG) of the person.
+     * @param state The infection state of the person.
+     * @param inStateSince How long the person has been in its infection state.
+     * @param direction The direction the person is moving in.
+     * @return The row of the person.
+     */
+    public int add(
+        int id, String name, int x, int y, byte[] seed,
+        InfectionState.State state, int inStateSince, Direction direction
+    ) {
+        this.ensureCapacity(this.size + 1);
+        final int index = this.size++;
+        this.ids[index] = id;
+        this.names[index] = name;
+        this.xs[index] = x;
+        this.ys[index] = y;
+        this.ghostXs[index] = NO_GHOST;
+        this.ghostYs[index] = NO_GHOST;
+        this.directions[index] = (byte) direction.ordinal();
+        this.states[index] = (byte) state.ordinal();
+        this.inStateSince[index] = inStateSince;
+        if (seed.length == Sha256.LENGTH) {
+            System.arraycopy(seed, 0, this.digests, index * Sha256.LENGTH, Sha256.LENGTH);
+            if (this.seeds != null) {
+                this.seeds[index] = null;
+            }
+        } else {
+            if (this.seeds == null) {
+                this.seeds = new byte[this.ids.length][];
+            }
+            this.seeds[index] = seed.clone();
+        }
+        return index;
+    }
+
+    /**
+     * Appends a copy of a row of another population.
+     *
+     * @param source The population to copy the person from.
+     * @param row The row of the person in the other population.
+     * @return The row of the copy.
+     */
+    public int add(Population source, int row) {
+        this.ensureCapacity(this.size + 1);
+        final int index = this.size++;
+        this.ids[index] = source.ids[row];
+        this.names[index] = source.names[row];
+        this.xs[index] = source.xs[row];
+        this.ys[index] = source.ys[row];
+        this.ghostXs[index] = source.ghostXs[row];
+        this.ghostYs[index] = source.ghostYs[row];
+        this.directions[index] = source.directions[row];
+        this.states[index] = source.states[row];
+        this.inStateSince[index] = source.inStateSince[row];
+        System.arraycopy(source.digests, row * Sha256.LENGTH, this.digests, index * Sha256.LENGTH, Sha256.LENGTH);
+        if (source.seeds != null && source.seeds[row] != null) {
+            if (this.seeds == null) {
+                this.seeds = new byte[this.ids.length][];
+            }
+            this.seeds[index] = source.seeds[row];
+        } else if (this.seeds != null) {
+            this.seeds[index] = null;
+        }
+        return index;
+    }
+
+    private void move(int from, int to) {
+        this.ids[to] = this.ids[from];
+        this.names[to] = this.names[from];
+        this.xs[to] = this.xs[from];
+        this.ys[to] = this.ys[from];
+        this.ghostXs[to] = this.ghostXs[from];
+        this.ghostYs[to] = this.ghostYs[from];
+        this.directions[to] = this.directions[from];
+        this.states[to] = this.states[from];
+        this.inStateSince[to] = this.inStateSince[from];
+        System.arraycopy(this.digests, from * Sha256.LENGTH, this.digests, to * Sha256.LENGTH, Sha256.LENGTH);
+        if (this.seeds != null) {
+            this.seeds[to] = this.seeds[from];
+        }
+    }
+
+    /**
+     * Removes all persons located outside of the given area, preserving the order of the others.
+     *
+     * @param area The area to keep the persons of.
+     */
+    public void retainWithin(Rectangle area) {
+        int kept = 0;
+        for (int index = 0; index < this.size; index++) {
+            if (this.isWithin(index, area)) {
+                if (kept != index) {
+                    this.move(index, kept);
+                }
+                kept++;
+            }
+        }
+        if (this.seeds != null) {
+            Arrays.fill(this.seeds, kept, this.size, null);
+        }
+        this.size = kept;
+    }
+
+    /**
+     * Sorts the persons by their ids.
+     */
+    public void sortById() {
+        boolean sorted = true;
+        for (int index = 1; index < this.size && sorted; index++) {
+            sorted = this.ids[index - 1] <= this.ids[index];
+        }
+        if (sorted) {
+            return;
+        }
+
+        if (this.sortKeys.length < this.size) {
+            this.sortKeys = new long[this.ids.length];
+        }
+        for (int index = 0; index < this.size; index++) {
+            this.sortKeys[index] = ((long) this.ids[index] << 32) | index;
+        }
+        Arrays.sort(this.sortKeys, 0, this.size);
+
+        // we copy the rows in order into a shadow population and swap the arrays afterwards
+        if (this.shadow == null) {
+            this.shadow = new Population(this.parameters, this.ids.length);
+        }
+        final Population target = this.shadow;
+        target.clear();
+        for (int index = 0; index < this.size; index++) {
+            target.add(this, (int) this.sortKeys[index]);
+        }
+        this.swap(target);
+    }
+
+    private void swap(Population other) {
+        final int size = this.size;
+        this.size = other.size;
+        other.size = size;
+
+        int[] ints = this.ids;
+        this.ids = other.ids;
+        other.ids = ints;
+
+        final String[] names = this.names;
+        this.names = other.names;
+        other.names = names;
+
+        ints = this.xs;
+        this.xs = other.xs;
+        other.xs = ints;
+
+        ints = this.ys;
+        this.ys = other.ys;
+        other.ys = ints;
+
+        ints = this.ghostXs;
+        this.ghostXs = other.ghostXs;
+        other.ghostXs = ints;
+
+        ints = this.ghostYs;
+        this.ghostYs = other.ghostYs;
+        other.ghostYs = ints;
+
+        byte[] bytes = this.directions;
+        this.directions = other.directions;
+        other.directions = bytes;
+
+        bytes = this.states;
+        this.states = other.states;
+        other.states = bytes;
+
+        ints = this.inStateSince;
+        this.inStateSince = other.inStateSince;
+        other.inStateSince = ints;
+
+        bytes = this.digests;
+        this.digests = other.digests;
+        other.digests = bytes;
+
+        final byte[][] seeds = this.seeds;
+        this.seeds = other.seeds;
+        other.seeds = seeds;
+    }
+
+    /**
+     * Returns the id of a person.
+     *
+     * @param index The row of the person.
+     * @return The id of the person.
+     */
+    public int getId(int index) {
+        return this.ids[index];
+    }
+
+    /**
+     * Returns the name of a person.
+     *
+     * @param index The row of the person.
+     * @return The name of the person.
+     */
+    public String getName(int index) {
+        return this.names[index];
+    }
+
+    /**
+     * Returns the <em>x</em>-coordinate of the position of a person.
+     *
+     * @param index The row of the person.
+     * @return The <em>x</em>-coordinate of the position of the person.
+     */
+    public int getX(int index) {
+        return this.xs[index];
+    }
+
+    /**
+     * Returns the <em>y</em>-coordinate of the position of a person.
+     *
+     * @param index The row of the person.
+     * @return The <em>y</em>-coordinate of the position of the person.
+     */
+    public int getY(int index) {
+        return this.ys[index];
+    }
+
+    /**
+     * Returns whether a person is located within the given area.
+     *
+     * @param index The row of the person.
+     * @param area The area to check.
+     * @return Whether the person is located within the area.
+     */
+    public boolean isWithin(int index, Rectangle area) {
+        final int x = this.xs[index];
+        final int y = this.ys[index];
+        return (
+            area.getTopLeft().getX() <= x && x < area.getBottomRight().getX()
+            && area.getTopLeft().getY() <= y && y < area.getBottomRight().getY()
+        );
+    }
+
+    /**
+     * Returns whether a person has a ghost.
+     *
+     * @param index The row of the person.
+     * @return Whether the person has a ghost.
+     */
+    public boolean hasGhost(int index) {
+        return this.ghostXs[index] != NO_GHOST;
+    }
+
+    /**
+     * Returns the <em>x</em>-coordinate of the ghost of a person.
+     *
+     * @param index The row of the person.
+     * @return The <em>x</em>-coordinate of the ghost of the person.
+     */
+    public int getGhostX(int index) {
+        return this.ghostXs[index];
+    }
+
+    /**
+     * Returns the <em>y</em>-coordinate of the ghost of a person.
+     *
+     * @param index The row of the person.
+     * @return The <em>y</em>-coordinate of the ghost of the person.
+     */
+    public int getGhostY(int index) {
+        return this.ghostYs[index];
+    }
+
+    /**
+     * Returns the direction a person is moving in.
+     *
+     * @param index The row of the person.
+     * @return The direction the person is moving in.
+     */
+    public Direction getDirection(int index) {
+        return DIRECTIONS[this.directions[index]];
+    }
+
+    /**
+     * Returns the infection state of a person.
+     *
+     * @param index The row of the person.
+     * @return The infection state of the person.
+     */
+    public InfectionState.State getState(int index) {
+        return STATES[this.states[index]];
+    }
+
+    /**
+     * Returns how long a person has been in its infection state.
+     *
+     * @param index The row of the person.
+     * @return How long the person has been in its infection state.
+     */
+    public int getInStateSince(int index) {
+        return this.inStateSince[index];
+    }
+
+    /**
+     * Returns whether a person is susceptible.
+     *
+     * @param index The row of the person.
+     * @return Whether the person is susceptible.
+     */
+    public boolean isSusceptible(int index) {
+        return this.states[index] == SUSCEPTIBLE;
+    }
+
+    /**
+     * Returns whether a person is infected.
+     *
+     * @param index The row of the person.
+     * @return Whether the person is infected.
+     */
+    public boolean isInfected(int index) {
+        return this.states[index] == INFECTED;
+    }
+
+    /**
+     * Returns whether a person is infectious.
+     *
+     * @param index The row of the person.
+     * @return Whether the person is infectious.
+     */
+    public boolean isInfectious(int index) {
+        return this.states[index] == INFECTIOUS;
+    }
+
+    /**
+     * Returns whether a person has recovered.
+     *
+     * @param index The row of the person.
+     * @return Whether the person has recovered.
+     */
+    public boolean isRecovered(int index) {
+        return this.states[index] == RECOVERED;
+    }
+
+    private int getUnsignedByte(int index, int position) {
+        return this.digests[index * Sha256.LENGTH + position] & 0xFF;
+    }
+
+    /**
+     * Returns whether a person is coughing.
+     *
+     * @param index The row of the person.
+     * @return Whether the person is coughing.
+     */
+    public boolean isCoughing(int index) {
+        if (this.seeds != null && this.seeds[index] != null) {
+            return (this.seeds[index][0] & 0xFF) < this.parameters.getCoughThreshold();
+        }
+        return this.getUnsignedByte(index, 0) < this.parameters.getCoughThreshold();
+    }
+
+    /**
+     * Returns whether a person is breathing.
+     *
+     * @param index The row of the person.
+     * @return Whether the person is breathing.
+     */
+    public boolean isBreathing(int index) {
+        if (this.seeds != null && this.seeds[index] != null) {
+            return (this.seeds[index][1] & 0xFF) < this.parameters.getBreathThreshold();
+        }
+        return this.getUnsignedByte(index, 1) < this.parameters.getBreathThreshold();
+    }
+
+    /**
+     * Copies the RNG digest of a person.
+     *
+     * @param index The row of the person.
+     * @return A copy of the RNG digest of the person.
+     */
+    public byte[] getDigest(int index) {
+        if (this.seeds != null && this.seeds[index] != null) {
+            return this.seeds[index].clone();
+        }
+        return Arrays.copyOfRange(this.digests, index * Sha256.LENGTH, (index + 1) * Sha256.LENGTH);
+    }
+
+    /**
+     * Returns whether the RNG state of a person is a digest.
+     *
+     * <p>
+     * This is the case unless the person still holds a seed of another length, i.e., has
+     * not been advanced since it has been added with such a seed.
+     * </p>
+     *
+     * @param index The row of the person.
+     * @return Whether the RNG state of the person is a digest.
+     */
+    public boolean hasDigest(int index) {
+        return this.seeds == null || this.seeds[index] == null;
+    }
+
+    /**
+     * Copies the RNG digest of a person into the given array.
+     *
+     * @param index The row of the person, which has to have a digest, see <em>hasDigest</em>.
+     * @param target The array to copy the digest into.
+     * @param offset The position in the array to copy the digest to.
+     */
+    public void copyDigest(int index, byte[] target, int offset) {
+        System.arraycopy(this.digests, index * Sha256.LENGTH, target, offset, Sha256.LENGTH);
+    }
+
+    private void setState(int index, byte state) {
+        if (this.counters != null) {
+            this.counters.onStateChange(this.xs[index], this.ys[index], this.states[index], state);
+        }
+        this.states[index] = state;
+        this.inStateSince[index] = 0;
+    }
+
+    /**
+     * Infects a person with the virus.
+     *
+     * @param index The row of the person.
+     */
+    public void infect(int index) {
+        if (this.states[index] == SUSCEPTIBLE) {
+            this.setState(index, INFECTED);
+        }
+    }
+
+    /**
+     * Advances the RNG and the infection state of a person by one tick.
+     *
+     * <p>
+     * This is the part of a tick which does not depend on other persons.
+     * </p>
+     *
+     * @param index The row of the person.
+     */
+    public void advance(int index) {
+        if (this.seeds != null && this.seeds[index] != null) {
+            System.arraycopy(Sha256.digest(this.seeds[index]), 0, this.digests, index * Sha256.LENGTH, Sha256.LENGTH);
+            this.seeds[index] = null;
+        } else {
+            Sha256.hash(this.digests, index * Sha256.LENGTH, this.digests, index * Sha256.LENGTH);
+        }
+
+        this.inStateSince[index]++;
+
+        if (this.states[index] == INFECTED && this.inStateSince[index] >= this.parameters.getIncubationTime()) {
+            this.setState(index, INFECTIOUS);
+        } else if (this.states[index] == INFECTIOUS && this.inStateSince[index] >= this.parameters.getRecoveryTime()) {
+            this.setState(index, RECOVERED);
+        }
+    }
+
+    /**
+     * Returns the direction a person tries to move in after it has been advanced.
+     *
+     * @param index The row of the person.
+     * @return The direction the person tries to move in.
+     */
+    public Direction getHeading(int index) {
+        final int acceleration = this.getUnsignedByte(index, 2) / this.parameters.getAccelerationDivisor();
+        return HEADINGS[this.directions[index]][acceleration >= DIRECTIONS.length ? NONE : acceleration];
+    }
+
+    /**
+     * Moves a person to the given cell.
+     *
+     * @param index The row of the person.
+     * @param x The <em>x</em>-coordinate of the cell.
+     * @param y The <em>y</em>-coordinate of the cell.
+     * @param direction The direction the person moved in.
+     */
+    public void moveTo(int index, int x, int y, Direction direction) {
+        if (this.counters != null) {
+            this.counters.onMove(this.xs[index], this.ys[index], x, y, this.states[index]);
+        }
+        this.xs[index] = x;
+        this.ys[index] = y;
+        this.directions[index] = (byte) direction.ordinal();
+    }
+
+    /**
+     * Stops a person, i.e., sets its direction to <em>NONE</em>.
+     *
+     * @param index The row of the person.
+     */
+    public void stop(int index) {
+        this.directions[index] = NONE;
+    }
+
+    /**
+     * Simulates a tick on a person.
+     *
+     * @param index The row of the person.
+     * @param grid The grid the person must not leave.
+     * @param obstacles The obstacles the person must not bump into.
+     * @param occupancy The cells occupied by other persons and ghosts.
+     */
+    public void tick(int index, Rectangle grid, ObstacleMask obstacles, Occupancy occupancy) {
+        this.advance(index);
+
+        final int x = this.xs[index];
+        final int y = this.ys[index];
+        this.ghostXs[index] = x;
+        this.ghostYs[index] = y;
+        occupancy.add(x, y);
+
+        final Direction heading = this.getHeading(index);
+        final int targetX = x + heading.getVector().getX();
+        final int targetY = y + heading.getVector().getY();
+
+        // check whether we would would bump into a wall
+        if (
+            targetX < grid.getTopLeft().getX() || targetX >= grid.getBottomRight().getX()
+            || targetY < grid.getTopLeft().getY() || targetY >= grid.getBottomRight().getY()
+        ) {
+            this.stop(index);
+            return;
+        }
+
+        // check whether we would bump into an obstacle
+        if (obstacles.onObstacle(targetX, targetY)) {
+            this.stop(index);
+            return;
+        }
+
+        // check whether we would bump into another person
+        if (occupancy.isOccupied(targetX, targetY)) {
+            this.stop(index);
+            return;
+        }
+
+        occupancy.remove(x, y);
+        occupancy.add(targetX, targetY);
+        this.moveTo(index, targetX, targetY, heading);
+    }
+
+    /**
+     * Removes the ghost of a person.
+     *
+     * @param index The row of the person.
+     * @param occupancy The cells occupied by persons and ghosts.
+     */
+    public void bustGhost(int index, Occupancy occupancy) {
+        if (this.ghostXs[index] != NO_GHOST) {
+            occupancy.remove(this.ghostXs[index], this.ghostYs[index]);
+            this.ghostXs[index] = NO_GHOST;
+            this.ghostYs[index] = NO_GHOST;
+        }
+    }
+
+    /**
+     * Returns an info object based on the current state of a person.
+     *
+     * @param index The row of the person.
+     * @return An info object based on the current state of the person.
+     */
+    public PersonInfo getInfo(int index) {
+        return new PersonInfo(
+            this.names[index],
+            new XY(this.xs[index], this.ys[index]),
+            this.getDigest(index),
+            new InfectionState(STATES[this.states[index]], this.inStateSince[index]),
+            DIRECTIONS[this.directions[index]]
+        );
+    }
+
+    /**
+     * Returns a person acting as a view onto a row.
+     *
+     * <p>
+     * The view reads and writes the row directly. It is only valid as long as the rows are
+     * not rearranged, e.g., by <em>retainWithin</em> or <em>sortById</em>.
+     * </p>
+     *
+     * @param index The row of the person.
+     * @param context The context the person is simulated in.
+     * @return A person acting as a view onto the row.
+     */
+    public Person getPerson(int index, Context context) {
+        return new Person(this, index, context);
+    }
+
+    /**
+     * Returns a list of views onto the rows of the population.
+     *
+     * @param context The context the persons are simulated in.
+     * @return A list of views onto the rows of the population.
+     */
+    public List<Person> asList(Context context) {
+        return new AbstractList<Person>() {
+            @Override
+            public Person get(int index) {
+                if (index < 0 || index >= Population.this.size) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                return Population.this.getPerson(index, context);
+            }
+
+            @Override
+            public int size() {
+                return Population.this.size;
+            }
+        };
+    }
+
+    /**
+     * Returns a read-only list of info objects based on the rows of the population.
+     *
+     * <p>
+     * The info objects are created whenever an element is accessed. A scenario may hold
+     * such a list as its population, see <em>of</em>.
+     * </p>
+     *
+     * @return A read-only list of info objects based on the rows of the population.
+     */
+    public List<PersonInfo> asInfoList() {
+        return new InfoList();
+    }
+
+    /**
+     * Returns a population holding the given persons with their indices as ids.
+     *
+     * <p>
+     * If the list has been obtained by <em>asInfoList</em> from a population with the given
+     * parameters whose rows are the ids in order, that population is returned instead of a
+     * copy. Hence, the returned population must not be modified.
+     * </p>
+     *
+     * @param parameters The parameters of the simulation.
+     * @param infos The persons of the population.
+     * @return A population holding the given persons.
+     */
+    public static Population of(Parameters parameters, List<PersonInfo> infos) {
+        if (infos instanceof InfoList) {
+            final Population population = ((InfoList) infos).getPopulation();
+            if (population.parameters == parameters && population.hasRowsAsIds()) {
+                return population;
+            }
+        }
+        final Population population = new Population(parameters, infos.size());
+        int id = 0;
+        for (PersonInfo info : infos) {
+            population.add(id, info);
+            id++;
+        }
+        return population;
+    }
+
+    private boolean hasRowsAsIds() {
+        for (int index = 0; index < this.size; index++) {
+            if (this.ids[index] != index) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class InfoList extends AbstractList<PersonInfo> implements RandomAccess {
+        private Population getPopulation() {
+            return Population.this;
+        }
+
+        @Override
+        public PersonInfo get(int index) {
+            if (index < 0 || index >= Population.this.size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return Population.this.getInfo(index);
+        }
+
+        @Override
+        public int size() {
+            return Population.this.size;
+        }
+    }
+}
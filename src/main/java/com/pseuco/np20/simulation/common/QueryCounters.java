@@ -0,0 +1,101 @@
+package com.pseuco.np20.simulation.common;
+
+import java.util.Arrays;
+
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Statistics;
+
+
+/**
+ * Maintains the statistics of all queries incrementally.
+ *
+ * <p>
+ * The persons are counted per region and infection state. A population the counters are
+ * attached to updates them whenever a person moves or changes its infection state. Hence,
+ * taking a snapshot of the statistics does not require to visit the population.
+ * </p>
+ */
+public class QueryCounters {
+    private static final int SUSCEPTIBLE = InfectionState.State.SUSCEPTIBLE.ordinal();
+    private static final int INFECTED = InfectionState.State.INFECTED.ordinal();
+    private static final int INFECTIOUS = InfectionState.State.INFECTIOUS.ordinal();
+    private static final int RECOVERED = InfectionState.State.RECOVERED.ordinal();
+
+    private final QueryRegions regions;
+
+    private final long[] counts;
+
+    /**
+     * Constructs counters with all counts being zero.
+     *
+     * @param regions The regions to count the persons in.
+     */
+    public QueryCounters(QueryRegions regions) {
+        this.regions = regions;
+        this.counts = new long[regions.getRegionCount() * QueryRegions.STATES];
+    }
+
+    /**
+     * Recounts the given population.
+     *
+     * <p>
+     * This is necessary whenever persons have been added to or removed from the population.
+     * </p>
+     *
+     * @param population The population to count.
+     */
+    public void rebuild(Population population) {
+        Arrays.fill(this.counts, 0);
+        for (int index = 0; index < population.size(); index++) {
+            final int region = this.regions.regionOf(population.getX(index), population.getY(index));
+            this.counts[region * QueryRegions.STATES + population.getState(index).ordinal()]++;
+        }
+    }
+
+    /**
+     * Updates the counts after a person has moved.
+     *
+     * @param fromX The <em>x</em>-coordinate of the previous position.
+     * @param fromY The <em>y</em>-coordinate of the previous position.
+     * @param toX The <em>x</em>-coordinate of the new position.
+     * @param toY The <em>y</em>-coordinate of the new position.
+     * @param state The ordinal of the infection state of the person.
+     */
+    public void onMove(int fromX, int fromY, int toX, int toY, int state) {
+        final int from = this.regions.regionOf(fromX, fromY);
+        final int to = this.regions.regionOf(toX, toY);
+        if (from != to) {
+            this.counts[from * QueryRegions.STATES + state]--;
+            this.counts[to * QueryRegions.STATES + state]++;
+        }
+    }
+
+    /**
+     * Updates the counts after a person has changed its infection state.
+     *
+     * @param x The <em>x</em>-coordinate of the position of the person.
+     * @param y The <em>y</em>-coordinate of the position of the person.
+     * @param from The ordinal of the previous infection state.
+     * @param to The ordinal of the new infection state.
+     */
+    public void onStateChange(int x, int y, int from, int to) {
+        final int region = this.regions.regionOf(x, y);
+        this.counts[region * QueryRegions.STATES + from]--;
+        this.counts[region * QueryRegions.STATES + to]++;
+    }
+
+    /**
+     * Takes a snapshot of the statistics of a query.
+     *
+     * @param query The index of the query.
+     * @return The current statistics of the query.
+     */
+    public Statistics getStatistics(int query) {
+        return new Statistics(
+            this.regions.sum(query, this.counts, SUSCEPTIBLE),
+            this.regions.sum(query, this.counts, INFECTED),
+            this.regions.sum(query, this.counts, INFECTIOUS),
+            this.regions.sum(query, this.counts, RECOVERED)
+        );
+    }
+}
@@ -0,0 +1,170 @@
+package com.pseuco.np20.simulation.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Rectangle;
+
+
+/**
+ * Divides an area into regions of cells which are covered by the same statistics queries.
+ *
+ * <p>
+ * Every cell of the area is mapped to a region. All cells of a region are contained in
+ * exactly the same query areas. Hence, it suffices to count the persons per region and
+ * infection state; the statistics of a query are the sum over the regions it covers.
+ * Moving a person only changes the counts if the region changes, which is checked in
+ * constant time regardless of the number of queries.
+ * </p>
+ *
+ * <p>
+ * Region <em>0</em> is covered by no query. It contains all cells outside of the bounds
+ * the statistics are collected for as well as all cells outside of the area.
+ * </p>
+ */
+public class QueryRegions {
+    /**
+     * The number of infection states counted per region.
+     */
+    public static final int STATES = InfectionState.State.values().length;
+
+    private final int queryCount;
+
+    private final int minX;
+    private final int minY;
+    private final int width;
+    private final int height;
+
+    private final int[] regions;
+
+    private final int[][] regionsOfQuery;
+    private final int[][] queriesOfRegion;
+
+    /**
+     * Constructs the regions for the given queries.
+     *
+     * @param area The area containing all cells regions are looked up for.
+     * @param queries The areas of the queries.
+     * @param bounds The area to collect statistics for, cells outside are never counted.
+     */
+    public QueryRegions(Rectangle area, List<Rectangle> queries, Rectangle bounds) {
+        this.queryCount = queries.size();
+        this.minX = area.getTopLeft().getX();
+        this.minY = area.getTopLeft().getY();
+        this.width = area.getSize().getX();
+        this.height = area.getSize().getY();
+        this.regions = new int[this.width * this.height];
+
+        // we refine the regions query by query, every region knows the queries covering it
+        final List<int[]> members = new ArrayList<>();
+        members.add(new int[0]);
+        final Map<Long, Integer> refinements = new HashMap<>();
+        for (int query = 0; query < this.queryCount; query++) {
+            final Rectangle queryArea = queries.get(query);
+            final int extension = query;
+            final int fromX = max(queryArea.getTopLeft().getX(), bounds.getTopLeft().getX(), this.minX);
+            final int fromY = max(queryArea.getTopLeft().getY(), bounds.getTopLeft().getY(), this.minY);
+            final int toX = min(
+                queryArea.getBottomRight().getX(), bounds.getBottomRight().getX(), this.minX + this.width
+            );
+            final int toY = min(
+                queryArea.getBottomRight().getY(), bounds.getBottomRight().getY(), this.minY + this.height
+            );
+            for (int y = fromY; y < toY; y++) {
+                for (int x = fromX; x < toX; x++) {
+                    final int cell = (y - this.minY) * this.width + (x - this.minX);
+                    final int region = this.regions[cell];
+                    this.regions[cell] = refinements.computeIfAbsent(
+                        ((long) region << 32) | query,
+                        (Long key) -> {
+                            final int[] covering = Arrays.copyOf(members.get(region), members.get(region).length + 1);
+                            covering[covering.length - 1] = extension;
+                            members.add(covering);
+                            return members.size() - 1;
+                        }
+                    );
+                }
+            }
+        }
+
+        this.queriesOfRegion = members.toArray(new int[0][]);
+        final int[] counts = new int[this.queryCount];
+        for (int[] covering : this.queriesOfRegion) {
+            for (int query : covering) {
+                counts[query]++;
+            }
+        }
+        this.regionsOfQuery = new int[this.queryCount][];
+        for (int query = 0; query < this.queryCount; query++) {
+            this.regionsOfQuery[query] = new int[counts[query]];
+            counts[query] = 0;
+        }
+        for (int region = 0; region < this.queriesOfRegion.length; region++) {
+            for (int query : this.queriesOfRegion[region]) {
+                this.regionsOfQuery[query][counts[query]++] = region;
+            }
+        }
+    }
+
+    private static int max(int a, int b, int c) {
+        return Math.max(a, Math.max(b, c));
+    }
+
+    private static int min(int a, int b, int c) {
+        return Math.min(a, Math.min(b, c));
+    }
+
+    /**
+     * Returns the number of queries.
+     *
+     * @return The number of queries.
+     */
+    public int getQueryCount() {
+        return this.queryCount;
+    }
+
+    /**
+     * Returns the number of regions.
+     *
+     * @return The number of regions.
+     */
+    public int getRegionCount() {
+        return this.queriesOfRegion.length;
+    }
+
+    /**
+     * Returns the region of the given cell.
+     *
+     * @param x The <em>x</em>-coordinate of the cell.
+     * @param y The <em>y</em>-coordinate of the cell.
+     * @return The region of the given cell.
+     */
+    public int regionOf(int x, int y) {
+        final int column = x - this.minX;
+        final int row = y - this.minY;
+        if (column < 0 || column >= this.width || row < 0 || row >= this.height) {
+            return 0;
+        }
+        return this.regions[row * this.width + column];
+    }
+
+    /**
+     * Sums up the counts of the regions covered by the given query.
+     *
+     * @param query The index of the query.
+     * @param counts The counts indexed by <em>region * STATES + state</em>.
+     * @param state The ordinal of the infection state to sum up.
+     * @return The number of persons in the given state within the query area.
+     */
+    public long sum(int query, long[] counts, int state) {
+        long sum = 0;
+        for (int region : this.regionsOfQuery[query]) {
+            sum += counts[region * STATES + state];
+        }
+        return sum;
+    }
+}
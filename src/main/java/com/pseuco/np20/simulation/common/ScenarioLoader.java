@@ -0,0 +1,287 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.Query;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+
+
+/**
+ * Loads scenarios without materialising their population as objects.
+ *
+ * <p>
+ * The small parts of a scenario are bound as usual. The population is read token by token
+ * right into a <em>Population</em>, so no <em>PersonInfo</em> objects are created. The
+ * scenario holds a view onto the population, see <em>Population.asInfoList</em>, from
+ * which the simulation engines obtain the population via <em>Population.of</em>.
+ * </p>
+ */
+public final class ScenarioLoader {
+    private static final Map<String, Direction> DIRECTIONS = codes(Direction.class);
+    private static final Map<String, InfectionState.State> STATES = codes(InfectionState.State.class);
+
+    private static final TypeReference<List<Rectangle>> OBSTACLES = new TypeReference<List<Rectangle>>() {};
+    private static final TypeReference<Map<String, Query>> QUERIES = new TypeReference<Map<String, Query>>() {};
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructs a loader binding the small parts of scenarios with the given mapper.
+     *
+     * @param objectMapper The mapper to bind the small parts of scenarios with.
+     */
+    public ScenarioLoader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Maps the JSON codes of the constants of an enum to the constants.
+     */
+    private static <E extends Enum<E>> Map<String, E> codes(Class<E> type) {
+        final Map<String, E> codes = new HashMap<>();
+        for (E constant : type.getEnumConstants()) {
+            try {
+                final JsonProperty property = type.getField(constant.name()).getAnnotation(JsonProperty.class);
+                codes.put(property != null ? property.value() : constant.name(), constant);
+            } catch (NoSuchFieldException error) {
+                throw new IllegalStateException(error);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Loads a scenario from the given file.
+     *
+     * @param file The file to load the scenario from.
+     * @return The loaded scenario.
+     * @throws IOException If the file cannot be read or is not a valid scenario.
+     */
+    public Scenario load(File file) throws IOException {
+        try (JsonParser parser = this.objectMapper.getFactory().createParser(file)) {
+            return this.load(parser);
+        }
+    }
+
+    /**
+     * Loads a scenario from the given stream.
+     *
+     * @param input The stream to load the scenario from.
+     * @return The loaded scenario.
+     * @throws IOException If the stream cannot be read or is not a valid scenario.
+     */
+    public Scenario load(InputStream input) throws IOException {
+        try (JsonParser parser = this.objectMapper.getFactory().createParser(input)) {
+            return this.load(parser);
+        }
+    }
+
+    /**
+     * Loads a scenario from the next object of the given parser.
+     *
+     * <p>
+     * This allows to load a scenario embedded in another document, e.g., an output.
+     * </p>
+     *
+     * @param parser The parser to load the scenario from.
+     * @return The loaded scenario.
+     * @throws IOException If the parser cannot be read or does not yield a valid scenario.
+     */
+    public Scenario load(JsonParser parser) throws IOException {
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+
+        String name = null;
+        Parameters parameters = null;
+        Integer ticks = null;
+        XY gridSize = null;
+        Boolean trace = null;
+        Partition partition = null;
+        List<Rectangle> obstacles = null;
+        Map<String, Query> queries = null;
+        Population population = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "parameters":
+                    parameters = parser.readValueAs(Parameters.class);
+                    break;
+                case "ticks":
+                    ticks = parser.getIntValue();
+                    break;
+                case "gridSize":
+                    gridSize = parser.readValueAs(XY.class);
+                    break;
+                case "trace":
+                    trace = parser.getBooleanValue();
+                    break;
+                case "partition":
+                    partition = parser.readValueAs(Partition.class);
+                    break;
+                case "obstacles":
+                    obstacles = parser.readValueAs(OBSTACLES);
+                    break;
+                case "statQueries":
+                    queries = parser.readValueAs(QUERIES);
+                    break;
+                case "population":
+                    population = readPopulation(parser, parameters);
+                    break;
+                default:
+                    throw new JsonParseException(parser, "unknown scenario property \"" + field + "\"");
+            }
+        }
+        expect(parser, parser.currentToken(), JsonToken.END_OBJECT);
+
+        require(parser, name, "name");
+        require(parser, parameters, "parameters");
+        require(parser, ticks, "ticks");
+        require(parser, gridSize, "gridSize");
+        require(parser, trace, "trace");
+        require(parser, partition, "partition");
+        require(parser, obstacles, "obstacles");
+        require(parser, queries, "statQueries");
+        require(parser, population, "population");
+
+        if (population.getParameters() != parameters) {
+            // the population came before the parameters, so we did not have them yet
+            final Population copy = new Population(parameters, population.size());
+            for (int row = 0; row < population.size(); row++) {
+                copy.add(population, row);
+            }
+            population = copy;
+        }
+
+        return new Scenario(
+            name, parameters, ticks, gridSize, trace, partition, obstacles, queries,
+            population.asInfoList()
+        );
+    }
+
+    private static Population readPopulation(JsonParser parser, Parameters parameters) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+        final Population population = new Population(parameters, 1024);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            readPerson(parser, population);
+        }
+        return population;
+    }
+
+    private static void readPerson(JsonParser parser, Population population) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+
+        String name = null;
+        XY position = null;
+        byte[] seed = null;
+        InfectionState.State state = null;
+        int inStateSince = 0;
+        Direction direction = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "pos":
+                    position = readPosition(parser);
+                    break;
+                case "rngState":
+                    seed = parser.getBinaryValue();
+                    break;
+                case "infectionState":
+                    expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        final String stateField = parser.getCurrentName();
+                        parser.nextToken();
+                        if ("type".equals(stateField)) {
+                            state = code(parser, STATES);
+                        } else if ("since".equals(stateField)) {
+                            inStateSince = parser.getIntValue();
+                        } else {
+                            throw new JsonParseException(parser, "unknown infection state property \"" + stateField + "\"");
+                        }
+                    }
+                    break;
+                case "direction":
+                    direction = code(parser, DIRECTIONS);
+                    break;
+                default:
+                    throw new JsonParseException(parser, "unknown person property \"" + field + "\"");
+            }
+        }
+
+        require(parser, name, "name");
+        require(parser, position, "pos");
+        require(parser, seed, "rngState");
+        require(parser, state, "infectionState");
+        require(parser, direction, "direction");
+
+        // persons are identified by their index in the scenario
+        population.add(
+            population.size(), name, position.getX(), position.getY(), seed, state, inStateSince, direction
+        );
+    }
+
+    private static XY readPosition(JsonParser parser) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        Integer x = null;
+        Integer y = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("x".equals(field)) {
+                x = parser.getIntValue();
+            } else if ("y".equals(field)) {
+                y = parser.getIntValue();
+            } else {
+                throw new JsonParseException(parser, "unknown position property \"" + field + "\"");
+            }
+        }
+        require(parser, x, "x");
+        require(parser, y, "y");
+        return new XY(x, y);
+    }
+
+    private static <E> E code(JsonParser parser, Map<String, E> codes) throws IOException {
+        final E constant = codes.get(parser.getValueAsString());
+        if (constant == null) {
+            throw new JsonParseException(parser, "unknown code \"" + parser.getText() + "\"");
+        }
+        return constant;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "expected " + expected + " but found " + actual);
+        }
+    }
+
+    private static void require(JsonParser parser, Object value, String property) throws JsonParseException {
+        if (value == null) {
+            throw new JsonParseException(parser, "missing property \"" + property + "\"");
+        }
+    }
+}
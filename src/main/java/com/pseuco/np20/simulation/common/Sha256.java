@@ -0,0 +1,75 @@
+package com.pseuco.np20.simulation.common;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * An allocation-free SHA-256 step for the 32 byte digests the random number generators
+ * of the persons are iterating on.
+ *
+ * <p>
+ * Every thread owns a <em>MessageDigest</em> which is reused for all digests computed by
+ * that thread. The digest is written into a buffer provided by the caller instead of a
+ * freshly allocated array. We deliberately stick to the JDK implementation here because
+ * the JIT compiles its compression function to the SHA instructions of the CPU, which
+ * a hand-written implementation in Java cannot keep up with.
+ * </p>
+ */
+public final class Sha256 {
+    /**
+     * The length of a digest in bytes.
+     */
+    public static final int LENGTH = 32;
+
+    private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST = ThreadLocal.withInitial(Sha256::create);
+
+    private Sha256() {
+    }
+
+    private static MessageDigest create() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException error) {
+            throw new RuntimeException(error);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 digest of a 32 byte message.
+     *
+     * <p>
+     * The message is consumed completely before the digest is written. Hence, the message
+     * may be replaced by its digest by passing the same array and offset twice.
+     * </p>
+     *
+     * @param message The array containing the message.
+     * @param messageOffset The offset of the message in its array.
+     * @param digest The array to store the digest in.
+     * @param digestOffset The offset of the digest in its array.
+     */
+    public static void hash(byte[] message, int messageOffset, byte[] digest, int digestOffset) {
+        final MessageDigest messageDigest = MESSAGE_DIGEST.get();
+        messageDigest.update(message, messageOffset, LENGTH);
+        try {
+            messageDigest.digest(digest, digestOffset, LENGTH);
+        } catch (DigestException error) {
+            throw new RuntimeException(error);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 digest of a message of arbitrary length.
+     *
+     * <p>
+     * This is the slow path for seeds which do not have the length of a digest.
+     * </p>
+     *
+     * @param message The message to compute the digest of.
+     * @return The digest of the message.
+     */
+    public static byte[] digest(byte[] message) {
+        return MESSAGE_DIGEST.get().digest(message);
+    }
+}
@@ -8,4 +8,40 @@ import com.pseuco.np20.model.Output;
  */
 public interface Simulation extends Runnable {
     public Output getOutput();
-}
\ No newline at end of file
+
+    /**
+     * Streams the trace to the given writer while the simulation is running.
+     *
+     * <p>
+     * Has to be called before the simulation is run. The trace of the output is empty then.
+     * </p>
+     *
+     * @param traceWriter The writer to stream the trace to.
+     */
+    public void setTraceWriter(TraceWriter traceWriter);
+
+    /**
+     * Continues the simulation from the given checkpoint instead of the scenario.
+     *
+     * <p>
+     * Has to be called before the simulation is run. The output is the same as if the
+     * simulation had been run from the scenario.
+     * </p>
+     *
+     * @param checkpoint The checkpoint to continue from.
+     */
+    public void resume(Checkpoint checkpoint);
+
+    /**
+     * Writes a checkpoint to the given writer every given number of ticks.
+     *
+     * <p>
+     * Has to be called before the simulation is run. Engines may postpone checkpoints to
+     * their next synchronisation point.
+     * </p>
+     *
+     * @param checkpointWriter The writer to write the checkpoints to.
+     * @param interval The number of ticks between checkpoints.
+     */
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter, int interval);
+}
@@ -0,0 +1,161 @@
+package com.pseuco.np20.simulation.common;
+
+import java.util.Arrays;
+
+
+/**
+ * A uniform spatial hash grid over the positions of a population.
+ *
+ * <p>
+ * The persons are bucketed into square cells whose side length is the infection radius.
+ * Hence, all persons within the infection radius of a person are located in the same or
+ * in one of the eight neighboring buckets. This allows to find all pairs of persons close
+ * enough to infect each other without comparing every person with every other person.
+ * </p>
+ *
+ * <p>
+ * The grid only covers the bounding box of the population and has to be rebuilt whenever
+ * the persons have moved.
+ * </p>
+ */
+public class SpatialHash {
+    private final int radius;
+    private final int bucketSize;
+
+    private int size = 0;
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private int[] buckets = new int[0];
+
+    private int minX;
+    private int minY;
+    private int columns;
+    private int rows;
+
+    private int[] bucketStart = new int[1];
+    private int[] bucketItems = new int[0];
+
+    private int[] neighbors = new int[16];
+
+    /**
+     * Constructs a spatial hash for the given infection radius.
+     *
+     * @param radius The infection radius.
+     */
+    public SpatialHash(int radius) {
+        this.radius = radius;
+        this.bucketSize = Math.max(1, radius);
+    }
+
+    /**
+     * Rebuilds the grid for the current positions of the given population.
+     *
+     * @param population The population to index.
+     */
+    public void rebuild(Population population) {
+        this.size = population.size();
+        if (this.xs.length < this.size) {
+            this.xs = new int[this.size];
+            this.ys = new int[this.size];
+            this.buckets = new int[this.size];
+            this.bucketItems = new int[this.size];
+        }
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int index = 0; index < this.size; index++) {
+            final int x = population.getX(index);
+            final int y = population.getY(index);
+            this.xs[index] = x;
+            this.ys[index] = y;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        if (this.size == 0) {
+            minX = maxX = minY = maxY = 0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = (maxX - minX) / this.bucketSize + 1;
+        this.rows = (maxY - minY) / this.bucketSize + 1;
+
+        // counting sort keeps the persons of every bucket in ascending order
+        final int bucketCount = this.columns * this.rows;
+        if (this.bucketStart.length < bucketCount + 1) {
+            this.bucketStart = new int[bucketCount + 1];
+        } else {
+            Arrays.fill(this.bucketStart, 0, bucketCount + 1, 0);
+        }
+        for (int person = 0; person < this.size; person++) {
+            this.buckets[person] = this.bucketOf(this.xs[person], this.ys[person]);
+            this.bucketStart[this.buckets[person] + 1]++;
+        }
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            this.bucketStart[bucket + 1] += this.bucketStart[bucket];
+        }
+        for (int person = 0; person < this.size; person++) {
+            this.bucketItems[this.bucketStart[this.buckets[person]]++] = person;
+        }
+        // every start has been advanced to the end of its bucket, i.e., the start of the next one
+        System.arraycopy(this.bucketStart, 0, this.bucketStart, 1, bucketCount);
+        this.bucketStart[0] = 0;
+    }
+
+    private int bucketOf(int x, int y) {
+        return ((y - this.minY) / this.bucketSize) * this.columns + (x - this.minX) / this.bucketSize;
+    }
+
+    /**
+     * Collects the indices of all persons after the given person which are within the
+     * infection radius of the given person.
+     *
+     * <p>
+     * The indices are collected in ascending order and can be retrieved with
+     * <em>getNeighbor</em> until this method is called again.
+     * </p>
+     *
+     * @param index The index of the person in the indexed population.
+     * @return The number of collected neighbors.
+     */
+    public int collectNeighbors(int index) {
+        final int x = this.xs[index];
+        final int y = this.ys[index];
+        final int column = (x - this.minX) / this.bucketSize;
+        final int row = (y - this.minY) / this.bucketSize;
+        int count = 0;
+        for (int otherRow = Math.max(0, row - 1); otherRow <= Math.min(this.rows - 1, row + 1); otherRow++) {
+            for (int otherColumn = Math.max(0, column - 1); otherColumn <= Math.min(this.columns - 1, column + 1); otherColumn++) {
+                final int bucket = otherRow * this.columns + otherColumn;
+                for (int item = this.bucketStart[bucket]; item < this.bucketStart[bucket + 1]; item++) {
+                    final int other = this.bucketItems[item];
+                    if (other <= index) {
+                        continue;
+                    }
+                    final int distance = Math.abs(x - this.xs[other]) + Math.abs(y - this.ys[other]);
+                    if (distance <= this.radius) {
+                        if (count == this.neighbors.length) {
+                            this.neighbors = Arrays.copyOf(this.neighbors, 2 * count);
+                        }
+                        this.neighbors[count++] = other;
+                    }
+                }
+            }
+        }
+        Arrays.sort(this.neighbors, 0, count);
+        return count;
+    }
+
+    /**
+     * Returns a neighbor collected by the last call of <em>collectNeighbors</em>.
+     *
+     * @param position The position of the neighbor in the collected neighbors.
+     * @return The index of the neighbor in the indexed population.
+     */
+    public int getNeighbor(int position) {
+        return this.neighbors[position];
+    }
+}
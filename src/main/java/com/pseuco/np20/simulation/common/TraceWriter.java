@@ -0,0 +1,40 @@
+package com.pseuco.np20.simulation.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+
+
+/**
+ * Streams an output to a file while the simulation is running.
+ *
+ * <p>
+ * The scenario is written when the writer is constructed and every trace entry is written
+ * as soon as it is complete. See <em>JsonTraceWriter</em> and <em>BinaryTraceWriter</em>
+ * for the supported formats.
+ * </p>
+ */
+public interface TraceWriter extends Closeable {
+    /**
+     * Writes the next entry of the trace.
+     *
+     * <p>
+     * The entries have to be written in the order of the ticks they have been recorded at.
+     * </p>
+     *
+     * @param entry The entry to write.
+     */
+    void write(TraceEntry entry);
+
+    /**
+     * Writes the statistics and completes the output.
+     *
+     * @param statistics The computed statistics for each tick.
+     * @throws IOException If the output cannot be written.
+     */
+    void finish(Map<String, List<Statistics>> statistics) throws IOException;
+}
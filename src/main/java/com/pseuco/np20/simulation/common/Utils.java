@@ -1,8 +1,10 @@
 package com.pseuco.np20.simulation.common;
 
+import java.util.Arrays;
+
+import com.pseuco.np20.model.ObstacleMask;
 import com.pseuco.np20.model.Rectangle;
 import com.pseuco.np20.model.Scenario;
-import com.pseuco.np20.model.XY;
 
 /**
  * Some utility functions you may find useful.
@@ -20,6 +22,11 @@ public class Utils {
      * information may propagate although on closer inspection this is not the case. What
      * are those cases? Can you improve on that?
      *
+     * The check does not compare every source cell with every target cell. Only the cells
+     * of both areas within reach of the other area are considered. For those, we compute the
+     * Manhattan distance to the closest free target cell with two sweeps over their bounding
+     * box. Hence, the check takes time linear in the size of the areas.
+     *
      * @param scenario The scenario to check for obstacles and use the parameters from.
      * @param source The <em>source area</em> for which to check the propagation possibility.
      * @param target The <em>target area</em> for which to check the propagation possibility.
@@ -30,26 +37,97 @@ public class Utils {
         final Rectangle source,
         final Rectangle target
     ) {
-        for (final XY sourceCell : source) {
-            if (scenario.onObstacle(sourceCell)) {
-                continue;
+        final int radius = scenario.getParameters().getInfectionRadius();
+        // neighbouring cells are always within reach, even if the radius is zero
+        final int reach = Math.max(1, radius);
+
+        // only the cells within reach of the other area have to be considered
+        final int sourceMinX = Math.max(source.getTopLeft().getX(), target.getTopLeft().getX() - reach);
+        final int sourceMinY = Math.max(source.getTopLeft().getY(), target.getTopLeft().getY() - reach);
+        final int sourceMaxX = Math.min(source.getBottomRight().getX(), target.getBottomRight().getX() + reach);
+        final int sourceMaxY = Math.min(source.getBottomRight().getY(), target.getBottomRight().getY() + reach);
+        final int targetMinX = Math.max(target.getTopLeft().getX(), source.getTopLeft().getX() - reach);
+        final int targetMinY = Math.max(target.getTopLeft().getY(), source.getTopLeft().getY() - reach);
+        final int targetMaxX = Math.min(target.getBottomRight().getX(), source.getBottomRight().getX() + reach);
+        final int targetMaxY = Math.min(target.getBottomRight().getY(), source.getBottomRight().getY() + reach);
+        if (
+            sourceMinX >= sourceMaxX || sourceMinY >= sourceMaxY
+            || targetMinX >= targetMaxX || targetMinY >= targetMaxY
+        ) {
+            return false;
+        }
+
+        final ObstacleMask obstacles = scenario.getObstacleMask();
+
+        // the Manhattan distance of every cell of the bounding box to the closest free target cell
+        final int minX = Math.min(sourceMinX, targetMinX);
+        final int minY = Math.min(sourceMinY, targetMinY);
+        final int columns = Math.max(sourceMaxX, targetMaxX) - minX;
+        final int rows = Math.max(sourceMaxY, targetMaxY) - minY;
+        final int[] distances = new int[columns * rows];
+        Arrays.fill(distances, Integer.MAX_VALUE / 2);
+        boolean anyFree = false;
+        for (int y = targetMinY; y < targetMaxY; y++) {
+            for (int x = targetMinX; x < targetMaxX; x++) {
+                if (!obstacles.onObstacle(x, y)) {
+                    distances[(y - minY) * columns + x - minX] = 0;
+                    anyFree = true;
+                }
             }
-            for (final XY targetCell : target) {
-                if (scenario.onObstacle(targetCell)) {
+        }
+        if (!anyFree) {
+            return false;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                final int index = row * columns + column;
+                if (column > 0) {
+                    distances[index] = Math.min(distances[index], distances[index - 1] + 1);
+                }
+                if (row > 0) {
+                    distances[index] = Math.min(distances[index], distances[index - columns] + 1);
+                }
+            }
+        }
+        for (int row = rows - 1; row >= 0; row--) {
+            for (int column = columns - 1; column >= 0; column--) {
+                final int index = row * columns + column;
+                if (column < columns - 1) {
+                    distances[index] = Math.min(distances[index], distances[index + 1] + 1);
+                }
+                if (row < rows - 1) {
+                    distances[index] = Math.min(distances[index], distances[index + columns] + 1);
+                }
+            }
+        }
+
+        for (int y = sourceMinY; y < sourceMaxY; y++) {
+            for (int x = sourceMinX; x < sourceMaxX; x++) {
+                if (obstacles.onObstacle(x, y)) {
                     continue;
                 }
-                final int deltaX = Math.abs(sourceCell.getX() - targetCell.getX());
-                final int deltaY = Math.abs(sourceCell.getY() - targetCell.getY());
-                final int distance = deltaX + deltaY;
-                if (deltaX <= 1 && deltaY <= 1) {
+                final int row = y - minY;
+                final int column = x - minX;
+                if (distances[row * columns + column] <= radius) {
                     return true;
                 }
-                if (distance <= scenario.getParameters().getInfectionRadius()) {
-                    return true;
+                // diagonal neighbours are within reach regardless of the radius
+                for (int deltaY = -1; deltaY <= 1; deltaY += 2) {
+                    for (int deltaX = -1; deltaX <= 1; deltaX += 2) {
+                        final int neighbourRow = row + deltaY;
+                        final int neighbourColumn = column + deltaX;
+                        if (
+                            0 <= neighbourRow && neighbourRow < rows
+                            && 0 <= neighbourColumn && neighbourColumn < columns
+                            && distances[neighbourRow * columns + neighbourColumn] == 0
+                        ) {
+                            return true;
+                        }
+                    }
                 }
             }
         }
 
         return false;
     }
-}
\ No newline at end of file
+}
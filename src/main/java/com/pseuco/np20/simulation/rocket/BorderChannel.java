@@ -0,0 +1,118 @@
+package com.pseuco.np20.simulation.rocket;
+
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.simulation.common.Population;
+
+// Hands the people in a part of one patch over to a neighbouring patch at every synchronisation
+// There is exactly one producer (the patch owning the area) and one consumer (the neighbour)
+//
+// The channel is double buffered: the producer copies synchronisation k into buffer k % 2
+// The buffers are populations owned by the channel, so people are moved as plain rows
+// Neither side creates any objects once the buffers have grown large enough
+// Usually the producer also consumes from its neighbour, then it cannot get to synchronisation k + 2
+// before the neighbour has read synchronisation k and never has to wait
+// If the exchange is one-sided, the producer waits until buffer k % 2 has been read
+// So each side only has to wait if the other side is actually behind
+//
+// Publication goes through volatile epochs: writing one releases the buffer, reading it acquires it
+// Neither side ever blocks: if it cannot go on, it leaves a wakeup and returns false
+// The other side runs the wakeup as soon as it has made progress
+// Both check the epoch again after leaving the wakeup, so no wakeup can be lost
+public class BorderChannel
+{
+    private final int producerId;
+    private final int consumerId;
+    private final Rectangle intersection;
+
+    private final Population[] buffers;
+    private volatile int published;
+    private volatile int consumed;
+    private volatile Runnable consumerWakeUp = null;
+    private volatile Runnable producerWakeUp = null;
+
+    // The first synchronisation going through the channel is the given epoch
+    public BorderChannel(int pProducerId, int pConsumerId, Rectangle pIntersection, Parameters pParameters, int pFirstEpoch)
+    {
+        published = pFirstEpoch - 1;
+        consumed = pFirstEpoch - 1;
+        producerId = pProducerId;
+        consumerId = pConsumerId;
+        intersection = pIntersection;
+        buffers = new Population[] { new Population(pParameters), new Population(pParameters) };
+    }
+
+    public int getProducerId()
+    {
+        return producerId;
+    }
+
+    public int getConsumerId()
+    {
+        return consumerId;
+    }
+
+    // The part of the producer's patch the consumer needs for its padding
+    public Rectangle getIntersection()
+    {
+        return intersection;
+    }
+
+    // Copies the people of the producer located in the intersection into the channel
+    // Returns false and runs the wakeup later if the consumer has not read the buffer yet
+    public boolean publish(int pEpoch, Population pSource, Runnable pWakeUp)
+    {
+        if(consumed < pEpoch - 2)
+        {
+            producerWakeUp = pWakeUp;
+            if(consumed < pEpoch - 2)
+            {
+                return false;
+            }
+            producerWakeUp = null;
+        }
+        Population buffer = buffers[pEpoch & 1];
+        buffer.clear();
+        for(int i = 0; i < pSource.size(); i++)
+        {
+            if(pSource.isWithin(i, intersection))
+            {
+                buffer.add(pSource, i);
+            }
+        }
+        published = pEpoch;
+        wakeUp(consumerWakeUp);
+        return true;
+    }
+
+    // Appends the people published for the given synchronisation to the population of the consumer
+    // Returns false and runs the wakeup later if the producer has not published them yet
+    public boolean receive(int pEpoch, Population pTarget, Runnable pWakeUp)
+    {
+        if(published < pEpoch)
+        {
+            consumerWakeUp = pWakeUp;
+            if(published < pEpoch)
+            {
+                return false;
+            }
+            consumerWakeUp = null;
+        }
+        Population buffer = buffers[pEpoch & 1];
+        for(int i = 0; i < buffer.size(); i++)
+        {
+            pTarget.add(buffer, i);
+        }
+        consumed = pEpoch;
+        wakeUp(producerWakeUp);
+        return true;
+    }
+
+    private static void wakeUp(Runnable pWakeUp)
+    {
+        if(pWakeUp != null)
+        {
+            pWakeUp.run();
+        }
+    }
+}
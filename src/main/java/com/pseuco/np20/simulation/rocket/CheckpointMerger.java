@@ -0,0 +1,84 @@
+package com.pseuco.np20.simulation.rocket;
+
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.simulation.common.CheckpointWriter;
+import com.pseuco.np20.simulation.common.Population;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Gathers the people of the patches at a checkpoint and hands them to the checkpoint writer
+// Every patch hands in a copy of the people inside its patch and goes on right away
+// Merging the parts and writing them is left to the background thread of the writer
+// The number of patches may change from one checkpoint to another when Rocket rebalances the patches
+public class CheckpointMerger
+{
+    private final CheckpointWriter writer;
+    private final StatisticsAccumulator accumulator;
+    private final int interval;
+    private final int startTick;
+
+    // The number of patches handing in from the given tick on
+    private final TreeMap<Integer, Integer> patchCounts;
+    private final Map<Integer, List<Population>> pending;
+    // The statistics entries before this one have been written with an earlier checkpoint
+    private int nextEntry;
+
+    // The interval has to be a multiple of the ticks between synchronisations
+    public CheckpointMerger(CheckpointWriter pWriter, StatisticsAccumulator pAccumulator, int pPatchCount, int pInterval, int pStartTick)
+    {
+        writer = pWriter;
+        accumulator = pAccumulator;
+        interval = pInterval;
+        startTick = pStartTick;
+        patchCounts = new TreeMap<>();
+        patchCounts.put(pStartTick, pPatchCount);
+        pending = new HashMap<>();
+        nextEntry = 0;
+    }
+
+    // Checkpoints are taken every interval ticks
+    // A resumed simulation also takes one right away, so its checkpoint file starts with the state it resumed from
+    public boolean isCheckpoint(int pTick)
+    {
+        return pTick > 0 && (pTick % interval == 0 || pTick == startTick);
+    }
+
+    // From the given tick on, the checkpoints are handed in by the given number of patches
+    public synchronized void setPatchCount(int pFromTick, int pPatchCount)
+    {
+        patchCounts.put(pFromTick, pPatchCount);
+    }
+
+    // Every patch hands in its part once it has reached the checkpoint
+    // By then, all patches have reported the statistics up to the checkpoint, so they are final
+    public synchronized void add(int pTick, Population pPart)
+    {
+        List<Population> parts = pending.computeIfAbsent(pTick, tick -> new ArrayList<>());
+        parts.add(pPart);
+        if(parts.size() < patchCounts.floorEntry(pTick).getValue())
+        {
+            return;
+        }
+        pending.remove(pTick);
+
+        Map<String, List<Statistics>> statistics = new LinkedHashMap<>();
+        String[] queryKeys = accumulator.getQueryKeys();
+        for(int i=0; i < queryKeys.length; i++)
+        {
+            List<Statistics> list = new ArrayList<>();
+            for(int entry=nextEntry; entry <= pTick; entry++)
+            {
+                list.add(accumulator.getStatistics(entry, i));
+            }
+            statistics.put(queryKeys[i], list);
+        }
+        nextEntry = pTick + 1;
+
+        writer.writeCheckpoint(pTick, parts, statistics);
+    }
+}
@@ -0,0 +1,322 @@
+package com.pseuco.np20.simulation.rocket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.simulation.common.Population;
+
+
+/**
+ * Plans a partition balancing the expected work of the patches.
+ *
+ * <p>
+ * A patch simulates the persons inside the patch and its paddings. Every person is moved
+ * once per tick and checked against the persons in the buckets of the spatial hash around
+ * it, see <em>SpatialHash</em>. Hence, we estimate the work of a person as one plus the
+ * number of persons initially located in its bucket, and the work of a patch as the sum
+ * over the persons in the patch extended by the padding. A cluster thus weighs with its
+ * density but not with the square of its size, as only persons in neighbouring buckets
+ * are checked against each other. Obstacles enter through the initial positions: cells
+ * covered by obstacles hold no persons and do not add any work.
+ * </p>
+ *
+ * <p>
+ * The planned partition has as many columns and rows as the partition of the scenario.
+ * Every patch is at least as wide and high as the padding, so the paddings of a patch only
+ * reach into its direct neighbours. If the grid is too small for that, columns or rows are
+ * dropped.
+ * </p>
+ *
+ * <p>
+ * Rocket also plans anew for the current positions of the persons when it rebalances the
+ * patches during a run.
+ * </p>
+ *
+ * <p>
+ * The columns and rows are balanced alternately. Given the rows, the cut lines between the
+ * columns are placed such that the maximal work of any patch is minimal, and vice versa.
+ * </p>
+ */
+public class PartitionPlanner {
+    private static final int ROUNDS = 4;
+
+    private final int padding;
+    private final int minimalSize;
+
+    private final int width;
+    private final int height;
+
+    private final int[] xs;
+    private final int[] ys;
+    private final long[] works;
+
+    /**
+     * Constructs a planner for the initial population of the given scenario.
+     *
+     * @param scenario The scenario to plan the partition for.
+     * @param padding The padding Rocket uses.
+     */
+    public PartitionPlanner(Scenario scenario, int padding) {
+        this(scenario, padding, Population.of(scenario.getParameters(), scenario.getPopulation()));
+    }
+
+    /**
+     * Constructs a planner for the current positions of the given population.
+     *
+     * @param scenario The scenario to plan the partition for.
+     * @param padding The padding Rocket uses.
+     * @param population The population of the scenario.
+     */
+    public PartitionPlanner(Scenario scenario, int padding, Population population) {
+        this.padding = padding;
+        this.minimalSize = Math.max(1, padding);
+        this.width = scenario.getGridSize().getX();
+        this.height = scenario.getGridSize().getY();
+
+        this.xs = new int[population.size()];
+        this.ys = new int[population.size()];
+        for (int person = 0; person < population.size(); person++) {
+            this.xs[person] = population.getX(person);
+            this.ys[person] = population.getY(person);
+        }
+        this.works = this.estimateWorks(scenario.getParameters().getInfectionRadius());
+    }
+
+    /**
+     * Estimates the work of every person from the number of persons in its bucket.
+     */
+    private long[] estimateWorks(int radius) {
+        final int bucketSize = Math.max(1, radius);
+        final long rows = (this.height + bucketSize - 1) / bucketSize;
+        final long[] buckets = new long[this.xs.length];
+        for (int person = 0; person < this.xs.length; person++) {
+            buckets[person] = this.xs[person] / bucketSize * rows + this.ys[person] / bucketSize;
+        }
+        final long[] sorted = buckets.clone();
+        Arrays.sort(sorted);
+
+        final long[] works = new long[this.xs.length];
+        for (int person = 0; person < this.xs.length; person++) {
+            works[person] = 1 + upperBound(sorted, buckets[person]) - lowerBound(sorted, buckets[person]);
+        }
+        return works;
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (sorted[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(long[] sorted, long key) {
+        return lowerBound(sorted, key + 1);
+    }
+
+    /**
+     * Plans a partition for the given scenario.
+     *
+     * @param scenario The scenario to plan the partition for.
+     * @param padding The padding Rocket uses.
+     * @return The planned partition.
+     */
+    public static Partition plan(Scenario scenario, int padding) {
+        return new PartitionPlanner(scenario, padding).plan(
+            scenario.getPartition().getX().size() + 1,
+            scenario.getPartition().getY().size() + 1
+        );
+    }
+
+    /**
+     * Plans a partition with the given number of columns and rows.
+     *
+     * @param columns The number of columns.
+     * @param rows The number of rows.
+     * @return The planned partition.
+     */
+    public Partition plan(int columns, int rows) {
+        columns = Math.max(1, Math.min(columns, this.width / this.minimalSize));
+        rows = Math.max(1, Math.min(rows, this.height / this.minimalSize));
+
+        int[] xCuts = uniformCuts(columns, this.width);
+        int[] yCuts = uniformCuts(rows, this.height);
+        for (int round = 0; round < ROUNDS; round++) {
+            xCuts = this.balance(columns, this.width, this.xs, this.ys, yCuts, this.height);
+            yCuts = this.balance(rows, this.height, this.ys, this.xs, xCuts, this.width);
+        }
+
+        return new Partition(toList(xCuts), toList(yCuts));
+    }
+
+    private static int[] uniformCuts(int parts, int length) {
+        final int[] cuts = new int[parts - 1];
+        for (int cut = 1; cut < parts; cut++) {
+            cuts[cut - 1] = (int) ((long) cut * length / parts);
+        }
+        return cuts;
+    }
+
+    private static List<Integer> toList(int[] cuts) {
+        final List<Integer> list = new ArrayList<>(cuts.length);
+        for (int cut : cuts) {
+            list.add(cut);
+        }
+        return list;
+    }
+
+    /**
+     * Places the cuts along one axis given the cuts along the other axis.
+     *
+     * <p>
+     * We search for the smallest bound on the work of a patch for which the strips along
+     * the axis can be placed greedily.
+     * </p>
+     */
+    private int[] balance(int parts, int length, int[] along, int[] across, int[] acrossCuts, int acrossLength) {
+        if (parts == 1) {
+            return new int[0];
+        }
+        final Strips strips = new Strips(length, along, across, acrossCuts, acrossLength);
+
+        long lower = 0;
+        long upper = 0;
+        for (long work : this.works) {
+            upper += work;
+        }
+        while (lower < upper) {
+            final long bound = lower + (upper - lower) / 2;
+            if (strips.place(parts, bound) != null) {
+                upper = bound;
+            } else {
+                lower = bound + 1;
+            }
+        }
+        return strips.place(parts, lower);
+    }
+
+    /**
+     * Places strips along an axis such that no patch of a strip exceeds a bound on the work.
+     */
+    private class Strips {
+        private final int length;
+
+        private final int[] personsByPosition;
+        private final int[] firstOfPosition;
+
+        private final int[] firstBand;
+        private final int[] lastBand;
+
+        private final long[] bandWorks;
+
+        Strips(int length, int[] along, int[] across, int[] acrossCuts, int acrossLength) {
+            this.length = length;
+
+            // the persons are sorted by their position along the axis
+            this.firstOfPosition = new int[length + 1];
+            for (int position : along) {
+                this.firstOfPosition[position + 1]++;
+            }
+            for (int position = 0; position < length; position++) {
+                this.firstOfPosition[position + 1] += this.firstOfPosition[position];
+            }
+            this.personsByPosition = new int[along.length];
+            final int[] next = this.firstOfPosition.clone();
+            for (int person = 0; person < along.length; person++) {
+                this.personsByPosition[next[along[person]]++] = person;
+            }
+
+            // a person is simulated by every band whose extension by the padding contains it
+            final int[] bandStarts = new int[acrossCuts.length + 1];
+            final int[] bandEnds = new int[acrossCuts.length + 1];
+            for (int band = 0; band <= acrossCuts.length; band++) {
+                bandStarts[band] = band == 0 ? 0 : acrossCuts[band - 1];
+                bandEnds[band] = band == acrossCuts.length ? acrossLength : acrossCuts[band];
+            }
+            this.firstBand = new int[across.length];
+            this.lastBand = new int[across.length];
+            for (int person = 0; person < across.length; person++) {
+                int first = 0;
+                while (bandEnds[first] + PartitionPlanner.this.padding <= across[person]) {
+                    first++;
+                }
+                int last = first;
+                while (last + 1 <= acrossCuts.length && bandStarts[last + 1] - PartitionPlanner.this.padding <= across[person]) {
+                    last++;
+                }
+                this.firstBand[person] = first;
+                this.lastBand[person] = last;
+            }
+
+            this.bandWorks = new long[acrossCuts.length + 1];
+        }
+
+        /**
+         * Returns the cuts or <em>null</em> if the strips cannot be placed within the bound.
+         */
+        int[] place(int parts, long bound) {
+            final int[] cuts = new int[parts - 1];
+            final int padding = PartitionPlanner.this.padding;
+            final int minimalSize = PartitionPlanner.this.minimalSize;
+
+            int start = 0;
+            for (int strip = 0; strip < parts; strip++) {
+                final boolean last = strip == parts - 1;
+                final int maximalEnd = this.length - (parts - 1 - strip) * minimalSize;
+
+                // the strip is extended as long as its patches stay within the bound
+                Arrays.fill(this.bandWorks, 0);
+                long work = 0;
+                int added = Math.max(0, start - padding);
+                int end = start;
+                int feasibleEnd = -1;
+                while (end < maximalEnd) {
+                    end++;
+                    final int reach = Math.min(this.length, end + padding);
+                    for (; added < reach; added++) {
+                        work = Math.max(work, this.add(added));
+                    }
+                    if (work > bound) {
+                        break;
+                    }
+                    if (end - start >= minimalSize) {
+                        feasibleEnd = end;
+                    }
+                }
+                if (feasibleEnd < 0 || (last && feasibleEnd != this.length)) {
+                    return null;
+                }
+                if (!last) {
+                    cuts[strip] = feasibleEnd;
+                }
+                start = feasibleEnd;
+            }
+            return cuts;
+        }
+
+        /**
+         * Adds the persons at the given position to the strip and returns the maximal work of
+         * the patches they have been added to.
+         */
+        private long add(int position) {
+            long work = 0;
+            for (int index = this.firstOfPosition[position]; index < this.firstOfPosition[position + 1]; index++) {
+                final int person = this.personsByPosition[index];
+                for (int band = this.firstBand[person]; band <= this.lastBand[person]; band++) {
+                    this.bandWorks[band] += PartitionPlanner.this.works[person];
+                    work = Math.max(work, this.bandWorks[band]);
+                }
+            }
+            return work;
+        }
+    }
+}
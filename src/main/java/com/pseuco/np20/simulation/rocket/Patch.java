@@ -2,40 +2,75 @@ package com.pseuco.np20.simulation.rocket;
 
 import com.pseuco.np20.model.*;
 import com.pseuco.np20.simulation.common.Context;
+import com.pseuco.np20.simulation.common.Occupancy;
 import com.pseuco.np20.simulation.common.Person;
+import com.pseuco.np20.simulation.common.Population;
+import com.pseuco.np20.simulation.common.QueryCounters;
+import com.pseuco.np20.simulation.common.QueryRegions;
+import com.pseuco.np20.simulation.common.SpatialHash;
 import com.pseuco.np20.validator.Validator;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
-public class Patch extends Thread implements Context
+// A patch is advanced by the workers of a scheduler instead of running on a thread of its own
+// Whenever it has to wait for a neighbour, it gives up its worker and resumes where it stopped once woken up
+public class Patch implements Context
 {
     private final int id;
     private final int ticksAllowed;
+    private final int startTick;
     private int currentTick;
+    private int endTick;
+    private long tickNanos;
+    private final PatchMetrics metrics;
 
     private final Scenario scenario;
     private final Validator validator;
 
     private final Rectangle patchGrid;
     private final Rectangle[] paddings;
-    private final List<Monitor> monitors;
-
-    private final List<Person> scenarioPopulation;
-    private final List<Person> population;
-
-    private final PatchWait waiter = new PatchWait();
-
-    private final Map<String, List<Statistics>> statistics;
-    private final List<TraceEntryId> traces;
-
-    public Patch(int pId, int pTicksAllowed, Scenario pScenario, Validator pValidator, Rectangle pPatchGrid, Rectangle[] pPaddings, List<Person> pScenarioPopulation)
+    private final List<BorderChannel> outgoing;
+    private final List<BorderChannel> incoming;
+
+    private boolean started;
+    private int synchronizedEpoch;
+    private int nextOutgoing;
+    private int nextIncoming;
+    private Runnable wakeUp;
+
+    private final Population initialPopulation;
+    private final int[] initialRows;
+    private final Population population;
+
+    private final Occupancy occupancy;
+    private final SpatialHash spatialHash;
+
+    private final String[] queryKeys;
+    private final QueryCounters counters;
+
+    private final StatisticsAccumulator accumulator;
+    private TraceMerger traceMerger;
+    private int nextEntry;
+    private CheckpointMerger checkpointMerger;
+    private int checkpointedTick;
+
+    // The patch takes over the given rows of the initial population, which is the state before the start tick
+    // These are the people inside its grid, see Rocket.routePopulation
+    public Patch(int pId, int pTicksAllowed, int pStartTick, Scenario pScenario, Validator pValidator, Rectangle pPatchGrid, Rectangle[] pPaddings, Population pInitialPopulation, int[] pInitialRows, StatisticsAccumulator pAccumulator)
     {
-        monitors = new ArrayList<>();
-        population = new ArrayList<>();
-        statistics = new HashMap<>();
-        traces = new LinkedList<>();
-        currentTick = 0;
+        outgoing = new ArrayList<>();
+        incoming = new ArrayList<>();
+        startTick = pStartTick;
+        currentTick = pStartTick;
+        endTick = pScenario.getTicks();
+        tickNanos = 0;
+        metrics = new PatchMetrics(pId, pStartTick);
+        nextEntry = getFirstEntry();
+        checkpointedTick = -1;
+        started = false;
+        synchronizedEpoch = -1;
+        nextOutgoing = 0;
+        nextIncoming = 0;
 
         id = pId;
         ticksAllowed = pTicksAllowed;
@@ -43,7 +78,48 @@ public class Patch extends Thread implements Context
         validator = pValidator;
         patchGrid = pPatchGrid;
         paddings = pPaddings;
-        scenarioPopulation = pScenarioPopulation;
+        initialPopulation = pInitialPopulation;
+        initialRows = pInitialRows;
+        accumulator = pAccumulator;
+        population = new Population(scenario.getParameters());
+        occupancy = new Occupancy(calcReach());
+        spatialHash = new SpatialHash(scenario.getParameters().getInfectionRadius());
+
+        // Only people inside our patch are counted, the people in our paddings belong to our neighbours
+        queryKeys = accumulator.getQueryKeys();
+        List<Rectangle> queryAreas = new ArrayList<>();
+        for(String queryKey : queryKeys)
+        {
+            queryAreas.add(scenario.getQueries().get(queryKey).getArea());
+        }
+        counters = new QueryCounters(new QueryRegions(occupancy.getArea(), queryAreas, patchGrid));
+        population.setCounters(counters);
+    }
+
+    // Between two synchronisations our persons start inside the patch or its paddings
+    // and move at most one cell per tick, so they never leave this area
+    private Rectangle calcReach()
+    {
+        int minX = patchGrid.getTopLeft().getX();
+        int minY = patchGrid.getTopLeft().getY();
+        int maxX = patchGrid.getBottomRight().getX();
+        int maxY = patchGrid.getBottomRight().getY();
+        for(Rectangle padding : paddings)
+        {
+            if(padding != null)
+            {
+                minX = Math.min(minX, padding.getTopLeft().getX());
+                minY = Math.min(minY, padding.getTopLeft().getY());
+                maxX = Math.max(maxX, padding.getBottomRight().getX());
+                maxY = Math.max(maxY, padding.getBottomRight().getY());
+            }
+        }
+        int reach = ticksAllowed + 1;
+        XY topLeft = new XY(Math.max(0, minX - reach), Math.max(0, minY - reach));
+        XY bottomRight = new XY(
+                Math.min(scenario.getGrid().getBottomRight().getX(), maxX + reach),
+                Math.min(scenario.getGrid().getBottomRight().getY(), maxY + reach));
+        return new Rectangle(topLeft, bottomRight.sub(topLeft));
     }
 
     public int getPatchId()
@@ -73,305 +149,216 @@ public class Patch extends Thread implements Context
         return scenario.getObstacles();
     }
 
+    @Override
+    public ObstacleMask getObstacleMask()
+    {
+        return scenario.getObstacleMask();
+    }
+
     @Override
     public List<Person> getPopulation()
     {
-        return population;
+        return population.asList(this);
     }
 
-    public Map<String, List<Statistics>> getStatistics()
+    @Override
+    public Occupancy getOccupancy()
     {
-        return statistics;
+        return occupancy;
     }
 
-    public List<TraceEntryId> getTraces()
+    // The index of the first entry of our statistics and traces
+    // The initial state is only recorded by the patches starting at tick 0
+    public int getFirstEntry()
     {
-        return traces;
+        return startTick == 0 ? 0 : startTick + 1;
     }
 
-    public void addMonitor(Monitor m)
+    public PatchMetrics getMetrics()
     {
-        monitors.add(m);
+        return metrics;
     }
 
-    // We take the people we need. No Data race cause shared allPopulation list is only read from.
-    private void populate()
+    // The time spent in ticks since the last call
+    public long takeTickNanos()
     {
-        for(Person person : scenarioPopulation)
-        {
-            if(patchGrid.contains(person.getPosition()));
-            {
-                population.add(person.clone(this));
-            }
-        }
+        long nanos = tickNanos;
+        tickNanos = 0;
+        return nanos;
     }
 
-    // We initialize the map we use to collect the necessary statistics
-    private void initStatistics()
+    // The patch stops advancing once it reaches the given tick, which has to be a synchronisation
+    // The start tick is a synchronisation as well, even if it is no multiple of the ticks allowed, e.g. when resuming
+    public void setEndTick(int pEndTick)
     {
-        for(String queryKey : scenario.getQueries().keySet())
-        {
-            statistics.put(queryKey, new LinkedList<>());
-        }
+        endTick = pEndTick;
     }
 
-    // We collect the statistics for our patch for the current tick
-    // At the end, Rocket will add those up
-    private void extendStatistics()
+    // Appends the people inside our patch to the given population
+    // Only valid at a synchronisation, before the patch has synchronised
+    public void collectPopulation(Population pTarget)
     {
-        List<Person> list = population.stream().filter( (Person person) -> patchGrid.contains(person.getPosition()) ).collect(Collectors.toList());
-        for(Map.Entry<String, Query> entry : scenario.getQueries().entrySet())
+        for(int i = 0; i < population.size(); i++)
         {
-            List<Person> list2 = list.stream().filter( (Person person) -> entry.getValue().getArea().contains(person.getPosition()) ).collect(Collectors.toList());
-            if(list2.isEmpty())
+            if(population.isWithin(i, patchGrid))
             {
-                statistics.get(entry.getKey()).add(new Statistics(0, 0, 0, 0));
-            }
-            else
-            {
-                statistics.get(entry.getKey()).add(new Statistics(
-                        list2.stream().filter( (Person person) -> person.isSusceptible() ).count(),
-                        list2.stream().filter( (Person person) -> person.isInfected() ).count(),
-                        list2.stream().filter( (Person person) -> person.isInfectious() ).count(),
-                        list2.stream().filter( (Person person) -> person.isRecovered() ).count()
-                        ));
+                pTarget.add(population, i);
             }
         }
     }
 
-    // We extend the the trace for the current tick
-    private void extendTraces()
+    public void setTraceMerger(TraceMerger m)
+    {
+        traceMerger = m;
+    }
+
+    public void setCheckpointMerger(CheckpointMerger m)
+    {
+        checkpointMerger = m;
+    }
+
+    // Called whenever a neighbour has made progress this patch might be waiting for
+    public void setWakeUp(Runnable pWakeUp)
+    {
+        wakeUp = pWakeUp;
+    }
+
+    public void addChannel(BorderChannel c)
     {
-        if(scenario.getTrace())
+        if(c.getProducerId() == id)
+        {
+            outgoing.add(c);
+        }
+        else
         {
-            traces.add(new TraceEntryId(population.stream()
-                    .filter( (Person person) -> patchGrid.contains(person.getPosition()) )
-                    .map( (Person p) -> new PersonInfoId(p) ).collect(Collectors.toList())));
-
-//            if(currentTick == scenario.getTicks() - 1)
-//            {
-//                System.out.println("Thread " + id + " tick " + currentTick + " trace popNum " + traces.get(currentTick).getPopulation().size());
-//                System.out.println("Thread " + id + " pop0 in last trace " + traces.get(600).getPopulation().get(0).toString());
-//            }
+            incoming.add(c);
         }
     }
 
-    public void signalWrite()
+    // We take the people we need. No Data race cause the shared initial population is only read from.
+    // The people in our paddings are handed to us by our neighbours in the first synchronisation.
+    private void populate()
     {
-        waiter.signalWrite();
+        for(int row : initialRows)
+        {
+            population.add(initialPopulation, row);
+        }
+        counters.rebuild(population);
     }
 
-    public void signalRead()
+    // We add the statistics of our patch for the current tick to the accumulator right away
+    private void extendStatistics()
     {
-        waiter.signalRead();
+        for(int i=0; i < queryKeys.length; i++)
+        {
+            accumulator.add(nextEntry, i, counters.getStatistics(i));
+        }
+        accumulator.report(nextEntry);
     }
 
-    private void synchronize() throws InterruptedException
+    // We extend the the trace for the current tick
+    // Our part of the tick is handed to the merger right away, so we do not keep any history
+    private void extendTraces()
     {
-        // Delete people in paddings
-        population.removeIf(person -> !(patchGrid.contains(person.getPosition())));
-
-        // Here people will be written into the monitors
-        // monitorsWritten tells us which monitors we still need to write to
-        // in case one of them is not ready to be written to after the first for-loop
-        // We additionally wait after that first for-loop in the PatchWait.java monitor
-        // until one of the Monitor.java monitors notifies us to wake up
-        boolean[] monitorsWritten = new boolean[monitors.size()];
-        int monitorsWrittenCount = 0;
-
-        while(monitorsWrittenCount < monitors.size())
+        if(traceMerger != null)
         {
-            for(int i=0; i < monitors.size(); i++)
+            List<PersonInfoId> infos = new ArrayList<>();
+            for(int i = 0; i < population.size(); i++)
             {
-                if(!monitorsWritten[i])
+                if(population.isWithin(i, patchGrid))
                 {
-                    if(monitors.get(i).canWrite(id))
-                    {
-                        Rectangle intersection = monitors.get(i).getIntersection(id);
-                        List<Person> people = population.stream().filter(
-                                (Person person) -> intersection.contains(person.getPosition())
-                        ).collect(Collectors.toList());
-                        try
-                        {
-                            monitors.get(i).setPopulation(id, people);
-                        }
-                        catch(InterruptedException e)
-                        {
-                            e.printStackTrace();
-                        }
-
-                        monitorsWritten[i] = true;
-                        monitorsWrittenCount++;
-                    }
+                    infos.add(new PersonInfoId(population.getId(i), population.getInfo(i)));
                 }
             }
+            traceMerger.add(nextEntry, new TraceEntryId(infos));
+        }
+    }
 
-            if(monitorsWrittenCount < monitors.size())
-            {
-                waiter.writeWait();
-            }
+    // At a checkpoint we hand a copy of the people inside our patch to the merger
+    // The copy is written in the background, so we go on right away
+    private void checkpoint()
+    {
+        Population snapshot = new Population(scenario.getParameters(), population.size());
+        collectPopulation(snapshot);
+        checkpointMerger.add(currentTick, snapshot);
+        checkpointedTick = currentTick;
+    }
+
+    // We hand our border people to our neighbours and take theirs
+    // Returns false if a neighbour has not reached this synchronisation yet
+    // Then we are woken up later and continue with the channel we stopped at
+    private boolean synchronize()
+    {
+        int epoch = currentTick / ticksAllowed;
+        if(synchronizedEpoch == epoch)
+        {
+            return true;
+        }
+
+        if(nextOutgoing == 0 && nextIncoming == 0)
+        {
+            // Delete people in paddings
+            population.retainWithin(patchGrid);
         }
 
-        // OLD CODE
-        // Write into the monitors in parallel
-        // This is ok because those writer threads ONLY read from non-locked data
-//        Thread[] writers = new Thread[monitors.size()];
-//        for(int i=0; i < monitors.size(); i++)
-//        {
-//            int finalI = i;
-//            writers[i] = new Thread() {
-//                public void run()
-//                {
-//                    Rectangle intersection = monitors.get(finalI).getIntersection(id);
-//                    List<Person> people = population.stream().filter(
-//                            (Person person) -> intersection.contains(person.getPosition())
-//                    ).collect(Collectors.toList());
-//                    try
-//                    {
-//                        monitors.get(finalI).setPopulation(id, people);
-//                    }
-//                    catch(InterruptedException e)
-//                    {
-//                        e.printStackTrace();
-//                    }
-//                }
-//            };
-//            writers[i].start();
-//        }
-//        for(int i=0; i < monitors.size(); i++)
-//        {
-//            writers[i].join();
-//        }
-
-        // Reading uses the same principle as writing
-        boolean[] monitorsRead = new boolean[monitors.size()];
-        int monitorsReadCount = 0;
-
-        while(monitorsReadCount < monitors.size())
+        for(; nextOutgoing < outgoing.size(); nextOutgoing++)
         {
-            for(int i=0; i < monitors.size(); i++)
+            if(!outgoing.get(nextOutgoing).publish(epoch, population, wakeUp))
             {
-                if(!monitorsRead[i])
-                {
-                    if(monitors.get(i).canRead(id))
-                    {
-                        try
-                        {
-                            population.addAll(monitors.get(i).getPopulation(id));
-                        }
-                        catch(InterruptedException e)
-                        {
-                            e.printStackTrace();
-                        }
-
-                        monitorsRead[i] = true;
-                        monitorsReadCount++;
-                    }
-                }
+                return false;
             }
+        }
 
-            if(monitorsReadCount < monitors.size())
+        for(; nextIncoming < incoming.size(); nextIncoming++)
+        {
+            if(!incoming.get(nextIncoming).receive(epoch, population, wakeUp))
             {
-                waiter.readWait();
+                return false;
             }
         }
 
-        population.sort( (Person p1, Person p2) -> p1.getId() - p2.getId() );
-
-        // OLD CODE
-        // Read from the monitors in parallel
-        // This is ok because writing the people into local memory will happen sequentially afterwards
-//        Thread[] readers = new Thread[monitors.size()];
-//        List[] results = new List[monitors.size()];
-//        for(int i=0; i < monitors.size(); i++)
-//        {
-//            //System.out.println("hi, my name is " + Thread.currentThread() + " mon size: " + monitors.size());
-//            int finalI = i;
-//            readers[i] = new Thread()
-//            {
-//                public void run()
-//                {
-//                    try
-//                    {
-//                        List<Person> l = monitors.get(finalI).getPopulation(id);
-//                        l.sort( (Person p1, Person p2) -> p1.getId() - p2.getId() );
-//                        results[finalI] = l;
-//                    }
-//                    catch(InterruptedException e)
-//                    {
-//                        e.printStackTrace();
-//                    }
-//                }
-//            };
-//            readers[i].start();
-//        }
-//        for(int i=0; i < monitors.size(); i++)
-//        {
-//            readers[i].join();
-//        }
-//
-//        //System.out.println("thread " + id + " res " + results[0]);
-//
-//        // Add the read persons to local storage
-//        for(List l : results)
-//        {
-//            for(Object person : l)
-//            {
-//                //System.out.println("person: " + ((Person)person).toString());
-//                population.add((Person)person);
-//            }
-//        }
-//
-//        population.sort( (Person p1, Person p2) -> p1.getId() - p2.getId() );
+        population.sortById();
+        occupancy.rebuild(population);
+        counters.rebuild(population);
+
+        synchronizedEpoch = epoch;
+        nextOutgoing = 0;
+        nextIncoming = 0;
+        return true;
     }
 
     private void tick()
     {
-        if(currentTick % ticksAllowed == 0)
-        {
-            try
-            {
-                synchronize();
-            }
-            catch(InterruptedException e)
-            {
-                e.printStackTrace();
-            }
-        }
-
         validator.onPatchTick(currentTick, id);
 
-        for(Person person : population)
+        for(int i = 0; i < population.size(); i++)
         {
-            validator.onPersonTick(currentTick, id, person.getId());
-            person.tick();
+            validator.onPersonTick(currentTick, id, population.getId(i));
+            population.tick(i, getGrid(), getObstacleMask(), occupancy);
         }
 
         // Bust the ghosts of all persons
-        population.stream().forEach(Person::bustGhost);
+        for(int i = 0; i < population.size(); i++)
+        {
+            population.bustGhost(i, occupancy);
+        }
 
         // Now compute how the infection spreads between the population
+        // Only pairs within the infection radius are visited, in the order of a full pairwise loop
+        spatialHash.rebuild(population);
         for(int i = 0; i < population.size(); i++)
         {
-            for(int j = i + 1; j < population.size(); j++)
+            final int neighbors = spatialHash.collectNeighbors(i);
+            for(int k = 0; k < neighbors; k++)
             {
-                final Person iPerson = population.get(i);
-                final Person jPerson = population.get(j);
-                final XY iPosition = iPerson.getPosition();
-                final XY jPosition = jPerson.getPosition();
-                final int deltaX = Math.abs(iPosition.getX() - jPosition.getX());
-                final int deltaY = Math.abs(iPosition.getY() - jPosition.getY());
-                final int distance = deltaX + deltaY;
-                if(distance <= scenario.getParameters().getInfectionRadius())
+                final int j = spatialHash.getNeighbor(k);
+                if(population.isInfectious(i) && population.isCoughing(i) && population.isBreathing(j))
                 {
-                    if(iPerson.isInfectious() && iPerson.isCoughing() && jPerson.isBreathing())
-                    {
-                        jPerson.infect();
-                    }
-                    if(jPerson.isInfectious() && jPerson.isCoughing() && iPerson.isBreathing())
-                    {
-                        iPerson.infect();
-                    }
+                    population.infect(j);
+                }
+                if(population.isInfectious(j) && population.isCoughing(j) && population.isBreathing(i))
+                {
+                    population.infect(i);
                 }
             }
         }
@@ -379,20 +366,54 @@ public class Patch extends Thread implements Context
         // We need to collect statistics and extend the recorded trace
         extendStatistics();
         extendTraces();
+        nextEntry++;
     }
 
-    @Override
-    public void run()
+    // Advances the patch as far as possible
+    // Returns true once the end tick is reached and false if we have to wait for a neighbour or the trace merger
+    public boolean advance()
     {
-        populate();
-        initStatistics();
-        extendStatistics();
-        extendTraces();
+        if(!started)
+        {
+            populate();
+            if(startTick == 0)
+            {
+                extendStatistics();
+                extendTraces();
+                nextEntry++;
+            }
+            started = true;
+        }
 
-        for(; currentTick < this.scenario.getTicks(); currentTick++)
+        for(; currentTick < endTick; currentTick++)
         {
-            //System.out.println("t" + id + " tick " + currentTick);
+            if(currentTick % ticksAllowed == 0 || currentTick == startTick)
+            {
+                // We may be woken up several times at the same synchronisation, but take the checkpoint only once
+                if(checkpointMerger != null && checkpointedTick != currentTick && checkpointMerger.isCheckpoint(currentTick))
+                {
+                    checkpoint();
+                }
+                long start = System.nanoTime();
+                boolean synchronised = synchronize();
+                metrics.recordSynchronize(System.nanoTime() - start, !synchronised);
+                if(!synchronised)
+                {
+                    return false;
+                }
+            }
+            // The trace merger holds us back if we are too far ahead of the slowest patch
+            // We have synchronised by now, so the slowest patch finds everything it needs from us
+            if(traceMerger != null && !traceMerger.mayAdd(nextEntry, wakeUp))
+            {
+                return false;
+            }
+            long start = System.nanoTime();
             tick();
+            long nanos = System.nanoTime() - start;
+            tickNanos += nanos;
+            metrics.recordTick(currentTick + 1, population.size(), nanos);
         }
+        return true;
     }
-}
\ No newline at end of file
+}
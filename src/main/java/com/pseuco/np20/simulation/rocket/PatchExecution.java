@@ -0,0 +1,12 @@
+package com.pseuco.np20.simulation.rocket;
+
+// How Rocket runs its patches
+public enum PatchExecution
+{
+    // The patches share a fixed number of workers, see PatchScheduler
+    POOL,
+    // Every patch runs on a platform thread of its own
+    PLATFORM_THREADS,
+    // Every patch runs on a virtual thread of its own, this requires a Java runtime supporting them
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,67 @@
+package com.pseuco.np20.simulation.rocket;
+
+// The progress of a patch, which may be read by other threads at any time
+// Only the thread currently advancing the patch writes to it, so neither locks nor atomic updates are needed
+public class PatchMetrics
+{
+    private final int patchId;
+
+    private volatile int currentTick;
+    private volatile int populationSize;
+    private volatile long computeNanos;
+    private volatile long synchronizeNanos;
+    private volatile long waits;
+
+    public PatchMetrics(int pPatchId, int pStartTick)
+    {
+        patchId = pPatchId;
+        currentTick = pStartTick;
+    }
+
+    public int getPatchId()
+    {
+        return patchId;
+    }
+
+    public int getCurrentTick()
+    {
+        return currentTick;
+    }
+
+    public int getPopulationSize()
+    {
+        return populationSize;
+    }
+
+    public long getComputeNanos()
+    {
+        return computeNanos;
+    }
+
+    public long getSynchronizeNanos()
+    {
+        return synchronizeNanos;
+    }
+
+    // How often the patch had to wait for a neighbour at a synchronisation
+    public long getWaits()
+    {
+        return waits;
+    }
+
+    void recordTick(int pTick, int pPopulationSize, long pNanos)
+    {
+        currentTick = pTick;
+        populationSize = pPopulationSize;
+        computeNanos = computeNanos + pNanos;
+    }
+
+    void recordSynchronize(long pNanos, boolean pWaiting)
+    {
+        synchronizeNanos = synchronizeNanos + pNanos;
+        if(pWaiting)
+        {
+            waits = waits + 1;
+        }
+    }
+}
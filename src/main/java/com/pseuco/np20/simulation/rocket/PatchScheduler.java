@@ -0,0 +1,108 @@
+package com.pseuco.np20.simulation.rocket;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runs the patches on the workers of an executor
+// A worker advances a patch until it has finished or has to wait for a neighbour and then turns to the next patch
+// A waiting patch does not occupy a worker, it is submitted again as soon as one of its channels wakes it up
+//
+// Every patch is in one of three states:
+// RUNNING: the patch is queued or being advanced by a worker
+// PARKED: the patch waits for a neighbour and is not queued
+// NOTIFIED: the patch has been woken up while running, so it has to be advanced again before it may park
+// Only the transition from PARKED to RUNNING submits a patch, so no patch is ever advanced by two workers at once
+// A patch checks its channels again whenever it is advanced, so a wakeup arriving before it parked is never lost
+public class PatchScheduler
+{
+    private static final int RUNNING = 0;
+    private static final int PARKED = 1;
+    private static final int NOTIFIED = 2;
+
+    private final Patch[] patches;
+    private final Executor executor;
+    private final Runnable[] tasks;
+    private final AtomicIntegerArray states;
+    private final CountDownLatch finished;
+    private final AtomicReference<Throwable> failure;
+
+    public PatchScheduler(Patch[] pPatches, Executor pExecutor)
+    {
+        patches = pPatches;
+        executor = pExecutor;
+        tasks = new Runnable[patches.length];
+        states = new AtomicIntegerArray(patches.length);
+        finished = new CountDownLatch(patches.length);
+        failure = new AtomicReference<>();
+
+        for(int i=0; i < patches.length; i++)
+        {
+            int finalI = i;
+            tasks[i] = () -> advance(finalI);
+            patches[i].setWakeUp(() -> wake(finalI));
+        }
+    }
+
+    // Runs all patches to the end
+    public void run() throws InterruptedException
+    {
+        for(int i=0; i < patches.length; i++)
+        {
+            executor.execute(tasks[i]);
+        }
+        finished.await();
+
+        if(failure.get() != null)
+        {
+            throw new IllegalStateException("A patch failed", failure.get());
+        }
+    }
+
+    private void advance(int pPatch)
+    {
+        try
+        {
+            while(!patches[pPatch].advance())
+            {
+                if(states.compareAndSet(pPatch, RUNNING, PARKED))
+                {
+                    return;
+                }
+                // We have been notified in the meantime, so the neighbour may be ready by now
+                states.set(pPatch, RUNNING);
+            }
+            finished.countDown();
+        }
+        catch(Throwable e)
+        {
+            // The neighbours of a failed patch would wait forever, so we give up on the whole run
+            failure.compareAndSet(null, e);
+            while(finished.getCount() > 0)
+            {
+                finished.countDown();
+            }
+        }
+    }
+
+    private void wake(int pPatch)
+    {
+        while(true)
+        {
+            int state = states.get(pPatch);
+            if(state == PARKED)
+            {
+                if(states.compareAndSet(pPatch, PARKED, RUNNING))
+                {
+                    executor.execute(tasks[pPatch]);
+                    return;
+                }
+            }
+            else if(state == NOTIFIED || states.compareAndSet(pPatch, RUNNING, NOTIFIED))
+            {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.pseuco.np20.simulation.rocket;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs every patch on a thread of its own
+// A patch which has to wait for a neighbour parks its thread until the neighbour unparks it
+// Parking does not pin the carrier of a virtual thread as waiting on a monitor would,
+// so with virtual threads even very fine partitions only occupy a few platform threads
+public class PatchThreads
+{
+    private final Patch[] patches;
+    private final Thread[] threads;
+    private final AtomicReference<Throwable> failure;
+
+    public PatchThreads(Patch[] pPatches, ThreadFactory pFactory)
+    {
+        patches = pPatches;
+        threads = new Thread[patches.length];
+        failure = new AtomicReference<>();
+
+        for(int i=0; i < patches.length; i++)
+        {
+            int finalI = i;
+            threads[i] = pFactory.newThread(() -> advance(finalI));
+            Thread thread = threads[i];
+            patches[i].setWakeUp(() -> LockSupport.unpark(thread));
+        }
+    }
+
+    // Runs all patches to the end
+    public void run() throws InterruptedException
+    {
+        for(Thread thread : threads)
+        {
+            thread.start();
+        }
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        if(failure.get() != null)
+        {
+            throw new IllegalStateException("A patch failed", failure.get());
+        }
+    }
+
+    private void advance(int pPatch)
+    {
+        try
+        {
+            // A wakeup arriving before we park leaves a permit, so park returns right away
+            while(!patches[pPatch].advance() && failure.get() == null)
+            {
+                LockSupport.park(this);
+            }
+        }
+        catch(Throwable e)
+        {
+            // The neighbours of a failed patch would wait forever, so we give up on the whole run
+            failure.compareAndSet(null, e);
+            for(Thread thread : threads)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    // Threads are created as platform threads
+    public static ThreadFactory platformThreads()
+    {
+        return Thread::new;
+    }
+
+    // Threads are created as virtual threads
+    // We look them up at runtime, so the simulator still builds and runs on Java versions without them
+    public static ThreadFactory virtualThreads()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        }
+        catch(ReflectiveOperationException e)
+        {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this Java runtime", e);
+        }
+    }
+}
@@ -1,17 +1,16 @@
 package com.pseuco.np20.simulation.rocket;
 
 import com.pseuco.np20.model.PersonInfo;
-import com.pseuco.np20.simulation.common.Person;
 
 public class PersonInfoId
 {
     private final PersonInfo info;
     private final int id;
 
-    public PersonInfoId(Person p)
+    public PersonInfoId(int pId, PersonInfo pInfo)
     {
-        info = p.getInfo();
-        id = p.getId();
+        info = pInfo;
+        id = pId;
     }
 
     public int getId()
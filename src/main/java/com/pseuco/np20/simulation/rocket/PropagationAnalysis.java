@@ -0,0 +1,494 @@
+package com.pseuco.np20.simulation.rocket;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.pseuco.np20.model.ObstacleMask;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.common.Population;
+
+
+/**
+ * Analyses how fast information may propagate into a patch.
+ *
+ * <p>
+ * Between two synchronisations a patch does not know about the persons outside of the
+ * patch and its paddings. Any person there may be <em>wrong</em>, i.e., be simulated
+ * differently by the patch than by the actual simulation. Wrong persons spread as follows:
+ * </p>
+ *
+ * <ul>
+ *     <li>
+ *         A person next to a person at a wrong position may be blocked differently. Hence,
+ *         wrong positions spread by two cells per tick.
+ *     </li>
+ *     <li>
+ *         All persons within the infection radius of a person at a wrong position may be in a
+ *         wrong infection state. They become infectious after the incubation time at the
+ *         earliest and move by one cell per tick. Once infectious, they spread wrong states
+ *         within the infection radius as well.
+ *     </li>
+ * </ul>
+ *
+ * <p>
+ * Persons are only located on cells not covered by obstacles and on the cells they have been
+ * placed on initially. The patch has to synchronise before a wrong person may enter it.
+ * </p>
+ *
+ * <p>
+ * The wrong persons caused by several cells are the union of the wrong persons caused by
+ * every single cell. Hence, we compute for every cell the earliest tick a wrong person
+ * located there initially may cause a wrong person in the patch. All cells outside of the
+ * paddings with an earlier tick than the number of ticks between synchronisations have to be
+ * covered by the paddings. In contrast to the closed-form bound Rocket uses, walls of
+ * obstacles are taken into account. Patches surrounded by obstacles may synchronise far less
+ * often or never at all.
+ * </p>
+ */
+public class PropagationAnalysis {
+    private static final int UNREACHED = Integer.MAX_VALUE / 4;
+
+    // the order of the sides matches the paddings of a patch, starting at the top
+    private static final int TOP = 0;
+    private static final int RIGHT = 1;
+    private static final int BOTTOM = 2;
+    private static final int LEFT = 3;
+
+    private final int width;
+    private final int height;
+    private final ObstacleMask obstacles;
+    private final Set<Integer> stranded;
+
+    private final int radius;
+    private final int incubation;
+    private final int limit;
+
+    /**
+     * Constructs an analysis for the given scenario.
+     *
+     * @param scenario The scenario to analyse.
+     */
+    public PropagationAnalysis(Scenario scenario) {
+        this.width = scenario.getGridSize().getX();
+        this.height = scenario.getGridSize().getY();
+        this.obstacles = scenario.getObstacleMask();
+        this.radius = scenario.getParameters().getInfectionRadius();
+        // a person infected in some tick is infectious in the next tick at the earliest
+        this.incubation = Math.max(1, scenario.getParameters().getIncubationTime());
+        this.limit = scenario.getTicks();
+
+        // persons placed on obstacles may leave them but never return
+        this.stranded = new HashSet<>();
+        final Population population = Population.of(scenario.getParameters(), scenario.getPopulation());
+        for (int person = 0; person < population.size(); person++) {
+            final int x = population.getX(person);
+            final int y = population.getY(person);
+            if (this.obstacles.onObstacle(x, y)) {
+                this.stranded.add(y * this.width + x);
+            }
+        }
+    }
+
+    /**
+     * Analyses the given patch.
+     *
+     * @param patch The patch to analyse.
+     * @param padding The padding around the patch.
+     * @return The result of the analysis.
+     */
+    public Reach analyse(Rectangle patch, int padding) {
+        return new Reach(patch, padding);
+    }
+
+    private boolean isWalkable(int x, int y) {
+        return !this.obstacles.onObstacle(x, y) || this.stranded.contains(y * this.width + x);
+    }
+
+    private static int plus(int value, int delta) {
+        return Math.min(UNREACHED, value + delta);
+    }
+
+    /**
+     * How fast information may reach a patch from the cells around it.
+     */
+    public class Reach {
+        private final int patchMinX;
+        private final int patchMinY;
+        private final int patchMaxX;
+        private final int patchMaxY;
+        private final int[] fullWidths;
+
+        private final int ticksAllowed;
+        // the earliest arrival from the cells at some distance from a side of the patch
+        private final int[][] sides;
+        // the earliest arrival from the cells diagonal to the patch, clockwise from the top right
+        private final int[] corners;
+
+        Reach(Rectangle patch, int padding) {
+            this.patchMinX = patch.getTopLeft().getX();
+            this.patchMinY = patch.getTopLeft().getY();
+            this.patchMaxX = patch.getBottomRight().getX();
+            this.patchMaxY = patch.getBottomRight().getY();
+            this.fullWidths = new int[] {
+                Math.min(padding, this.patchMinY),
+                Math.min(padding, width - this.patchMaxX),
+                Math.min(padding, height - this.patchMaxY),
+                Math.min(padding, this.patchMinX)
+            };
+
+            this.sides = new int[4][];
+            for (int side = TOP; side <= LEFT; side++) {
+                this.sides[side] = new int[this.fullWidths[side] + 1];
+                Arrays.fill(this.sides[side], UNREACHED);
+            }
+            this.corners = new int[4];
+            Arrays.fill(this.corners, UNREACHED);
+
+            final Cells cells = new Cells(patch, padding);
+            final int[] arrival = cells.computeArrival();
+
+            int ticks = limit;
+            for (int row = 0; row < cells.rows; row++) {
+                for (int column = 0; column < cells.columns; column++) {
+                    final int x = cells.minX + column;
+                    final int y = cells.minY + row;
+                    final int earliest = arrival[cells.index(column, row)];
+                    if (earliest == UNREACHED || cells.inPatch(x, y)) {
+                        continue;
+                    }
+
+                    final int top = Math.max(0, this.patchMinY - y);
+                    final int right = Math.max(0, x - this.patchMaxX + 1);
+                    final int bottom = Math.max(0, y - this.patchMaxY + 1);
+                    final int left = Math.max(0, this.patchMinX - x);
+                    if (
+                        top > this.fullWidths[TOP] || right > this.fullWidths[RIGHT]
+                        || bottom > this.fullWidths[BOTTOM] || left > this.fullWidths[LEFT]
+                    ) {
+                        ticks = Math.min(ticks, earliest - 1);
+                        continue;
+                    }
+
+                    this.sides[TOP][top] = Math.min(this.sides[TOP][top], earliest);
+                    this.sides[RIGHT][right] = Math.min(this.sides[RIGHT][right], earliest);
+                    this.sides[BOTTOM][bottom] = Math.min(this.sides[BOTTOM][bottom], earliest);
+                    this.sides[LEFT][left] = Math.min(this.sides[LEFT][left], earliest);
+                    final int corner = top > 0 ? (right > 0 ? 0 : left > 0 ? 3 : -1) : bottom > 0 ? (right > 0 ? 1 : left > 0 ? 2 : -1) : -1;
+                    if (corner >= 0) {
+                        this.corners[corner] = Math.min(this.corners[corner], earliest);
+                    }
+                }
+            }
+            this.ticksAllowed = ticks;
+        }
+
+        /**
+         * Returns the number of ticks the patch with full paddings may be simulated on its own.
+         *
+         * <p>
+         * The result is capped at the number of ticks of the scenario, which means the patch
+         * never has to synchronise.
+         * </p>
+         *
+         * @return The number of ticks the patch may be simulated on its own.
+         */
+        public int getTicksAllowed() {
+            return this.ticksAllowed;
+        }
+
+        /**
+         * Returns the smallest paddings the patch requires to be simulated the given number of
+         * ticks on its own.
+         *
+         * <p>
+         * The paddings are ordered clockwise starting at the top, missing paddings are
+         * <em>null</em>. If the full paddings do not suffice, the full paddings are returned.
+         * </p>
+         *
+         * @param ticks The number of ticks the patch has to be simulated on its own.
+         * @return The paddings of the patch.
+         */
+        public Rectangle[] getPaddings(int ticks) {
+            if (this.ticksAllowed < ticks) {
+                return this.toPaddings(this.fullWidths, new boolean[] {true, true, true, true});
+            }
+
+            // every cell the patch may be reached from within the given ticks has to be covered
+            final int[] widths = new int[4];
+            for (int side = TOP; side <= LEFT; side++) {
+                for (int distance = 1; distance < this.sides[side].length; distance++) {
+                    if (this.sides[side][distance] <= ticks) {
+                        widths[side] = distance;
+                    }
+                }
+            }
+            final boolean[] corners = new boolean[4];
+            for (int corner = 0; corner < 4; corner++) {
+                corners[corner] = this.corners[corner] <= ticks;
+            }
+            return this.toPaddings(widths, corners);
+        }
+
+        private Rectangle[] toPaddings(int[] widths, boolean[] corners) {
+            final int top = widths[TOP];
+            final int right = widths[RIGHT];
+            final int bottom = widths[BOTTOM];
+            final int left = widths[LEFT];
+            final int patchWidth = this.patchMaxX - this.patchMinX;
+            final int patchHeight = this.patchMaxY - this.patchMinY;
+
+            final Rectangle[] paddings = new Rectangle[8];
+            paddings[0] = rectangle(this.patchMinX, this.patchMinY - top, patchWidth, top);
+            paddings[2] = rectangle(this.patchMaxX, this.patchMinY, right, patchHeight);
+            paddings[4] = rectangle(this.patchMinX, this.patchMaxY, patchWidth, bottom);
+            paddings[6] = rectangle(this.patchMinX - left, this.patchMinY, left, patchHeight);
+            if (corners[0]) {
+                paddings[1] = rectangle(this.patchMaxX, this.patchMinY - top, right, top);
+            }
+            if (corners[1]) {
+                paddings[3] = rectangle(this.patchMaxX, this.patchMaxY, right, bottom);
+            }
+            if (corners[2]) {
+                paddings[5] = rectangle(this.patchMinX - left, this.patchMaxY, left, bottom);
+            }
+            if (corners[3]) {
+                paddings[7] = rectangle(this.patchMinX - left, this.patchMinY - top, left, top);
+            }
+            return paddings;
+        }
+    }
+
+    private static Rectangle rectangle(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        return new Rectangle(new XY(x, y), new XY(width, height));
+    }
+
+    /**
+     * The cells around a patch which may hold wrong persons relevant to it.
+     *
+     * <p>
+     * Information from cells further away has to pass a cell outside of the paddings, which
+     * may hold a wrong person initially anyway. The cells are surrounded by a border of cells
+     * no person may be located on, so neighbors can be accessed without bound checks.
+     * </p>
+     */
+    private class Cells {
+        private final int minX;
+        private final int minY;
+        private final int columns;
+        private final int rows;
+        private final int stride;
+
+        private final Rectangle patch;
+        private final boolean[] walkable;
+        private final int[] neighbors;
+
+        Cells(Rectangle patch, int padding) {
+            this.patch = patch;
+            final int margin = padding + radius + 2;
+            this.minX = Math.max(0, patch.getTopLeft().getX() - margin);
+            this.minY = Math.max(0, patch.getTopLeft().getY() - margin);
+            this.columns = Math.min(width, patch.getBottomRight().getX() + margin) - this.minX;
+            this.rows = Math.min(height, patch.getBottomRight().getY() + margin) - this.minY;
+            this.stride = this.columns + 2;
+
+            this.walkable = new boolean[this.stride * (this.rows + 2)];
+            for (int row = 0; row < this.rows; row++) {
+                for (int column = 0; column < this.columns; column++) {
+                    this.walkable[this.index(column, row)] = isWalkable(this.minX + column, this.minY + row);
+                }
+            }
+
+            this.neighbors = new int[] {
+                -this.stride - 1, -this.stride, -this.stride + 1, -1, 1, this.stride - 1, this.stride, this.stride + 1
+            };
+        }
+
+        int index(int column, int row) {
+            return (row + 1) * this.stride + column + 1;
+        }
+
+        boolean inPatch(int x, int y) {
+            return this.patch.getTopLeft().getX() <= x && x < this.patch.getBottomRight().getX()
+                && this.patch.getTopLeft().getY() <= y && y < this.patch.getBottomRight().getY();
+        }
+
+        /**
+         * Computes the arrival ticks backwards starting at the patch.
+         *
+         * <p>
+         * A person in a wrong state lands on some cell by an infection. From there, it may
+         * walk into the patch or walk on until it is infectious and infect persons within
+         * the infection radius, which land in turn. We first compute for every cell the ticks
+         * from landing there to reaching the patch. Every round allows for one more infection
+         * in between until nothing changes anymore. Afterwards, we let the wrong positions
+         * spread from every cell, which may infect persons in every tick.
+         * </p>
+         */
+        int[] computeArrival() {
+            final int size = this.walkable.length;
+            final int cap = limit + 1;
+
+            final int[] walkToPatch = new int[size];
+            Arrays.fill(walkToPatch, UNREACHED);
+            for (int row = 0; row < this.rows; row++) {
+                for (int column = 0; column < this.columns; column++) {
+                    final int cell = this.index(column, row);
+                    if (this.walkable[cell] && this.inPatch(this.minX + column, this.minY + row)) {
+                        walkToPatch[cell] = 0;
+                    }
+                }
+            }
+            this.spread(walkToPatch);
+
+            // ticks from landing on a cell and from infecting persons on a cell to reaching the patch
+            final int[] landed = walkToPatch.clone();
+            final int[] infecting = new int[size];
+            final int[] walked = new int[size];
+            final int[] buffer = new int[size];
+            boolean changed = true;
+            while (changed) {
+                this.withinRadius(landed, infecting, buffer);
+                System.arraycopy(infecting, 0, walked, 0, size);
+                this.spread(walked);
+                for (int step = 0; step < incubation; step++) {
+                    this.step(walked, buffer);
+                }
+
+                changed = false;
+                for (int cell = 0; cell < size; cell++) {
+                    final int ticks = Math.min(walkToPatch[cell], plus(walked[cell], incubation));
+                    if (ticks < landed[cell] && ticks < cap) {
+                        landed[cell] = ticks;
+                        changed = true;
+                    }
+                }
+            }
+
+            // wrong positions spread by two cells per tick, so we count in half ticks
+            final int[] arrival = new int[size];
+            for (int cell = 0; cell < size; cell++) {
+                arrival[cell] = plus(infecting[cell], infecting[cell]);
+            }
+            this.spread(arrival);
+            this.step(arrival, buffer);
+            for (int cell = 0; cell < size; cell++) {
+                // infections only happen after the first movement
+                arrival[cell] = arrival[cell] == UNREACHED ? UNREACHED : (arrival[cell] + 2) / 2;
+            }
+            return arrival;
+        }
+
+        /**
+         * Lets the given ticks spread over the cells persons may walk on, one tick per cell.
+         *
+         * <p>
+         * The cells are visited in the order of their final ticks, merging the cells sorted by
+         * their initial ticks with a queue of cells reached by walking.
+         * </p>
+         */
+        private void spread(int[] ticks) {
+            int maxTicks = -1;
+            for (int cell = 0; cell < ticks.length; cell++) {
+                if (!this.walkable[cell]) {
+                    ticks[cell] = UNREACHED;
+                } else if (ticks[cell] < UNREACHED) {
+                    maxTicks = Math.max(maxTicks, ticks[cell]);
+                }
+            }
+
+            // the initial ticks are sorted by counting
+            final int[] firstSeed = new int[maxTicks + 2];
+            for (int cell = 0; cell < ticks.length; cell++) {
+                if (ticks[cell] < UNREACHED) {
+                    firstSeed[ticks[cell] + 1]++;
+                }
+            }
+            for (int value = 0; value <= maxTicks; value++) {
+                firstSeed[value + 1] += firstSeed[value];
+            }
+            final int seedCount = firstSeed[maxTicks + 1];
+            final int[] seeds = new int[seedCount];
+            final int[] next = Arrays.copyOf(firstSeed, maxTicks + 1);
+            for (int cell = 0; cell < ticks.length; cell++) {
+                if (ticks[cell] < UNREACHED) {
+                    seeds[next[ticks[cell]]++] = cell;
+                }
+            }
+
+            final int[] queue = new int[ticks.length];
+            final int[] seedTicks = new int[seedCount];
+            for (int seed = 0; seed < seedCount; seed++) {
+                seedTicks[seed] = ticks[seeds[seed]];
+            }
+            int head = 0;
+            int tail = 0;
+            int nextSeed = 0;
+            while (nextSeed < seedCount || head < tail) {
+                final int cell;
+                if (head == tail || (nextSeed < seedCount && seedTicks[nextSeed] <= ticks[queue[head]])) {
+                    cell = seeds[nextSeed];
+                    if (seedTicks[nextSeed++] > ticks[cell]) {
+                        continue;
+                    }
+                } else {
+                    cell = queue[head++];
+                }
+
+                final int reached = ticks[cell] + 1;
+                for (int offset : this.neighbors) {
+                    final int neighbor = cell + offset;
+                    if (this.walkable[neighbor] && reached < ticks[neighbor]) {
+                        ticks[neighbor] = reached;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Lets every cell take over the ticks of a neighbor persons may walk to, if smaller.
+         */
+        private void step(int[] ticks, int[] buffer) {
+            Arrays.fill(buffer, UNREACHED);
+            for (int row = 0; row < this.rows; row++) {
+                for (int cell = this.index(0, row), end = cell + this.columns; cell < end; cell++) {
+                    buffer[cell] = Math.min(ticks[cell], Math.min(ticks[cell - 1], ticks[cell + 1]));
+                }
+            }
+            for (int row = 0; row < this.rows; row++) {
+                for (int cell = this.index(0, row), end = cell + this.columns; cell < end; cell++) {
+                    if (this.walkable[cell]) {
+                        ticks[cell] = Math.min(buffer[cell], Math.min(buffer[cell - this.stride], buffer[cell + this.stride]));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Computes for every cell the smallest ticks of the cells persons may be located on
+         * within the infection radius.
+         */
+        private void withinRadius(int[] ticks, int[] result, int[] buffer) {
+            for (int cell = 0; cell < ticks.length; cell++) {
+                result[cell] = this.walkable[cell] ? ticks[cell] : UNREACHED;
+            }
+            for (int distance = 0; distance < radius; distance++) {
+                System.arraycopy(result, 0, buffer, 0, result.length);
+                for (int row = 0; row < this.rows; row++) {
+                    for (int cell = this.index(0, row), end = cell + this.columns; cell < end; cell++) {
+                        result[cell] = Math.min(
+                            Math.min(buffer[cell], Math.min(buffer[cell - 1], buffer[cell + 1])),
+                            Math.min(buffer[cell - this.stride], buffer[cell + this.stride])
+                        );
+                    }
+                }
+            }
+        }
+    }
+}
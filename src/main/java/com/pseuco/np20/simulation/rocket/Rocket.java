@@ -1,13 +1,21 @@
 package com.pseuco.np20.simulation.rocket;
 
 import com.pseuco.np20.model.*;
-import com.pseuco.np20.simulation.common.Person;
+import com.pseuco.np20.simulation.common.Checkpoint;
+import com.pseuco.np20.simulation.common.CheckpointWriter;
+import com.pseuco.np20.simulation.common.Population;
 import com.pseuco.np20.simulation.common.Simulation;
+import com.pseuco.np20.simulation.common.TraceWriter;
 import com.pseuco.np20.validator.InsufficientPaddingException;
 import com.pseuco.np20.validator.Validator;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 
 /**
@@ -20,21 +28,42 @@ import java.util.stream.Collectors;
  */
 public class Rocket implements Simulation
 {
+    // The slowest patch may take a quarter longer than the average before we rebalance
+    public static final double DEFAULT_REBALANCE_TOLERANCE = 1.25;
+    // A patch may run at most this many ticks ahead of the slowest one while the trace is merged
+    private static final int TRACE_WINDOW = 2;
+
     private final Scenario scenario;
     private final int padding;
-    private final int ticksAllowed;
+    // The closed-form bound holds for every patch with full paddings
+    private final int minTicksAllowed;
+    private int ticksAllowed;
     private int patchCount;
+    private final PatchExecution execution;
+    private final int workers;
     private final Validator validator;
 
-    private final List<Person> scenarioPopulation;
-    private final Map<Integer, Rectangle> patchRectangles;
+    private Population scenarioPopulation;
+    private Partition partition;
+    private PropagationAnalysis analysis;
+    private Map<Integer, Rectangle> patchRectangles;
+    private List<PropagationAnalysis.Reach> patchReaches;
     private Patch[] patches;
-    private final Set<Monitor> monitors;
+
+    private int rebalanceInterval;
+    private double rebalanceTolerance;
 
     private final Map<String, List<Statistics>> statistics;
-    private final Map<String, List<RWStatistics>> statistics2;
-    private final List<TraceEntryId> traces;
+    private StatisticsAccumulator accumulator;
+    private final RocketMetrics metrics;
     private final List<TraceEntry> tracesFinal;
+    private TraceWriter traceWriter;
+    private TraceMerger traceMerger;
+
+    private Checkpoint resumeFrom;
+    private CheckpointWriter checkpointWriter;
+    private int checkpointInterval;
+    private CheckpointMerger checkpointMerger;
 
     /**
      * Constructs a rocket with the given parameters.
@@ -56,20 +85,59 @@ public class Rocket implements Simulation
      */
     public Rocket(Scenario pScenario, int pPadding, Validator pValidator) throws InsufficientPaddingException
     {
-        scenarioPopulation = new ArrayList<>();
+        this(pScenario, pPadding, pValidator, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a rocket which runs the patches on the given number of worker threads.
+     *
+     * @param pScenario The scenario to simulate.
+     * @param pPadding The padding to be used.
+     * @param pValidator The validator to be called.
+     * @param pWorkers The number of worker threads.
+     */
+    public Rocket(Scenario pScenario, int pPadding, Validator pValidator, int pWorkers) throws InsufficientPaddingException
+    {
+        this(pScenario, pPadding, pValidator, PatchExecution.POOL, pWorkers);
+    }
+
+    /**
+     * Constructs a rocket which runs the patches as given.
+     *
+     * <p>
+     * The workers are used to set up the patches. If the patches run on threads of their
+     * own, they are not used for the simulation itself.
+     * </p>
+     *
+     * @param pScenario The scenario to simulate.
+     * @param pPadding The padding to be used.
+     * @param pValidator The validator to be called.
+     * @param pExecution How to run the patches.
+     * @param pWorkers The number of worker threads.
+     */
+    public Rocket(Scenario pScenario, int pPadding, Validator pValidator, PatchExecution pExecution, int pWorkers) throws InsufficientPaddingException
+    {
+        if(pWorkers <= 0)
+        {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        execution = pExecution;
+        workers = pWorkers;
+
         patchRectangles = new HashMap<>();
-        monitors = new HashSet<>();
+        rebalanceInterval = 0;
 
         statistics = new HashMap<>();
-        statistics2 = new HashMap<>();
-        traces = new LinkedList<>();
-        tracesFinal = new LinkedList<>();
+        tracesFinal = new ArrayList<>();
+        metrics = new RocketMetrics(pScenario.getTicks());
 
         scenario = pScenario;
+        partition = pScenario.getPartition();
         padding = pPadding;
         validator = pValidator;
 
-        ticksAllowed = calcTicksAllowed();
+        minTicksAllowed = calcTicksAllowed();
+        ticksAllowed = minTicksAllowed;
         if(ticksAllowed <= 0)
         {
             throw new InsufficientPaddingException(padding);
@@ -95,201 +163,285 @@ public class Rocket implements Simulation
         return ticks - 1;
     }
 
-    // We create the initial allPopulation list here so that everyone has a unique id
+    // Everyone gets their index in the scenario as unique id
+    // A scenario loaded by the ScenarioLoader already holds its people in this form, so nothing is copied
     private void populate()
     {
-        int id = 0;
-        for(PersonInfo personInfo : scenario.getPopulation())
+        scenarioPopulation = Population.of(scenario.getParameters(), scenario.getPopulation());
+    }
+
+    // The patches add up their statistics while they are running
+    private void initStatistics(int pPatchCount)
+    {
+        accumulator = new StatisticsAccumulator(scenario.getQueries().keySet().toArray(new String[0]), pPatchCount, scenario.getTicks() + 1);
+    }
+
+    // Every patch hands its part of each tick to the merger, which passes on complete ticks
+    // Patches more than the trace window ahead of the slowest one wait for it, so only that many ticks are held at once
+    // The ticks before the start tick are passed on right away, they were restored from a checkpoint
+    private void initTraces(int pStartTick)
+    {
+        if(scenario.getTrace())
         {
-            scenarioPopulation.add(new Person(id, null, scenario.getParameters(), personInfo));
-            id++;
+            Consumer<TraceEntry> output = traceWriter != null ? traceWriter::write : tracesFinal::add;
+            Consumer<TraceEntry> sink = checkpointWriter == null ? output : entry ->
+            {
+                checkpointWriter.writeTrace(entry);
+                output.accept(entry);
+            };
+            traceMerger = new TraceMerger(scenarioPopulation.size(), patchCount, scenario.getTicks() + 1, TRACE_WINDOW, sink);
+            metrics.setTraceMerger(traceMerger);
+            if(resumeFrom != null)
+            {
+                resumeFrom.getTrace().forEach(sink);
+                traceMerger.skipTo(pStartTick + 1);
+            }
+            for(int i=0; i < patchCount; i++)
+            {
+                patches[i].setTraceMerger(traceMerger);
+            }
         }
     }
 
-    // We initialize the map we use to collect the necessary statistics
-    private void initStatistics()
+    // The patches hand their people to the merger at every checkpoint, which is rounded up to a synchronisation
+    private void initCheckpoints(int pStartTick)
     {
-        for(String queryKey : scenario.getQueries().keySet())
+        if(checkpointWriter != null)
         {
-            statistics.put(queryKey, new LinkedList<>());
-
-            List<RWStatistics> list = new LinkedList<>();
-            for(int i=0; i <= scenario.getTicks(); i++)
+            int interval = (checkpointInterval + ticksAllowed - 1) / ticksAllowed * ticksAllowed;
+            checkpointMerger = new CheckpointMerger(checkpointWriter, accumulator, patchCount, interval, pStartTick);
+            for(int i=0; i < patchCount; i++)
             {
-                list.add(new RWStatistics());
+                patches[i].setCheckpointMerger(checkpointMerger);
             }
-            statistics2.put(queryKey, list);
         }
     }
 
-    private void initTraces()
+    // We create a patch together with the paddings it requires
+    // The paddings are ordered clockwise starting at the top, see PropagationAnalysis
+    private Patch createPatch(int pIndex, Population pPopulation, int[] pRows, int pStartTick)
     {
-        if(scenario.getTrace())
+        Rectangle patch = patchRectangles.get(pIndex);
+        Rectangle[] paddings = patchReaches.get(pIndex).getPaddings(ticksAllowed);
+
+        return new Patch(pIndex, ticksAllowed, pStartTick, scenario, validator, patch, paddings, pPopulation, pRows, accumulator);
+    }
+
+    // Runs the given tasks on the workers and waits for their results
+    private <T> List<T> invokeAll(ExecutorService pExecutor, List<Callable<T>> pTasks) throws InterruptedException
+    {
+        List<T> results = new ArrayList<>();
+        for(Future<T> future : pExecutor.invokeAll(pTasks))
         {
-            for(int i=0; i <= scenario.getTicks(); i++)
+            try
             {
-                traces.add(new TraceEntryId());
+                results.add(future.get());
+            }
+            catch(ExecutionException e)
+            {
+                throw new IllegalStateException("Setting up the patches failed", e.getCause());
             }
         }
+        return results;
     }
 
-    private void initThreads()
+    private Map<Integer, Rectangle> cutPatches(Partition pPartition)
     {
-        Iterator<Rectangle> patchesIterator = Utils.getPatches(scenario);
+        Map<Integer, Rectangle> rectangles = new HashMap<>();
+        Iterator<Rectangle> patchesIterator = Utils.getPatches(scenario, pPartition);
         for(int i=0; patchesIterator.hasNext(); i++)
         {
-            patchRectangles.put(i, patchesIterator.next());
+            rectangles.put(i, patchesIterator.next());
         }
-        patches = new Patch[patchRectangles.size()];
+        return rectangles;
+    }
 
-        Thread[] helpers = new Thread[patchRectangles.size()];
+    // We analyse how fast information may reach every given patch, which is costly, so it runs on the workers
+    private List<PropagationAnalysis.Reach> analyse(ExecutorService pExecutor, Map<Integer, Rectangle> pRectangles) throws InterruptedException
+    {
+        List<Callable<PropagationAnalysis.Reach>> tasks = new ArrayList<>();
+        for(int i=0; i < pRectangles.size(); i++)
+        {
+            Rectangle rectangle = pRectangles.get(i);
+            tasks.add(() -> analysis.analyse(rectangle, padding));
+        }
+        return invokeAll(pExecutor, tasks);
+    }
+
+    // The number of ticks all the given patches may run on their own with full paddings
+    private static int getTicksAllowed(List<PropagationAnalysis.Reach> pReaches)
+    {
+        int ticks = Integer.MAX_VALUE;
+        for(PropagationAnalysis.Reach reach : pReaches)
+        {
+            ticks = Math.min(ticks, reach.getTicksAllowed());
+        }
+        return ticks;
+    }
+
+    // The patches are created on the workers with the paddings they require for the given analyses
+    // The patches take over the given population, which is the state before the start tick
+    private void initPatches(ExecutorService pExecutor, Map<Integer, Rectangle> pRectangles, List<PropagationAnalysis.Reach> pReaches, Population pPopulation, int pStartTick) throws InterruptedException
+    {
+        patchRectangles = pRectangles;
+        patchReaches = pReaches;
+
+        int[][] rows = routePopulation(pPopulation);
+        List<Callable<Patch>> tasks = new ArrayList<>();
         for(int i=0; i < patchRectangles.size(); i++)
         {
             int finalI = i;
-            helpers[i] = new Thread()
+            tasks.add(() -> createPatch(finalI, pPopulation, rows[finalI], pStartTick));
+        }
+        patches = invokeAll(pExecutor, tasks).toArray(new Patch[0]);
+
+        patchCount = patchRectangles.size();
+        connectPatches(pStartTick);
+        metrics.setPatches(patches);
+    }
+
+    // The patches are cut from the partition row by row, so patch i lies in column i % columns and row i / columns
+    // The paddings of a patch reach into the columns and rows around it, which we find by walking along the cut lines
+    // Every padding is compared with the patches it may overlap, not with all of them
+    private void connectPatches(int pStartTick)
+    {
+        int[] xs = getBounds(partition.getX(), scenario.getGridSize().getX());
+        int[] ys = getBounds(partition.getY(), scenario.getGridSize().getY());
+        int columns = xs.length - 1;
+
+        for(int i=0; i < patchCount; i++)
+        {
+            Patch pi = patches[i];
+            int column = i % columns;
+            int row = i / columns;
+
+            // The producers of patch i ordered by their index, together with the first padding they overlap
+            TreeMap<Integer, Integer> producers = new TreeMap<>();
+            for(int k=0; k < 8; k++)
             {
-                public void run()
+                Rectangle padding = pi.getPaddings()[k];
+                if(padding == null)
                 {
-                    Rectangle patch = patchRectangles.get(finalI);
-                    Rectangle[] paddings = new Rectangle[8];
-
-                    // We compute the up to 8 padding rectangles for every patch
-                    // Hereby we make sure not to make paddings which exceed the scenario map in any direction
-                    // If a padding is possible and required in one of the 8 possible directions,
-                    // we save it in a clockwise order in the paddings array
-                    if(patch.getTopLeft().getY() > 0)
-                    {
-                        Rectangle pTop = new Rectangle(
-                                new XY(patch.getTopLeft().getX(), Math.max(0, patch.getTopLeft().getY() - padding)),
-                                new XY(patch.getSize().getX(), Math.min(padding, patch.getTopLeft().getY())));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pTop, patch))
-                        {
-                            paddings[0] = pTop;
-                        }
-                    }
-                    if(patch.getTopLeft().getX() > 0)
-                    {
-                        Rectangle pLeft = new Rectangle(
-                                new XY(Math.max(0, patch.getTopLeft().getX() - padding), patch.getTopLeft().getY()),
-                                new XY(Math.min(padding, patch.getTopLeft().getX()), patch.getSize().getY()));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pLeft, patch))
-                        {
-                            paddings[6] = pLeft;
-                        }
-                    }
-                    if(patch.getTopLeft().getY() > 0 && patch.getTopLeft().getX() > 0)
-                    {
-                        Rectangle pTopLeft = new Rectangle(
-                                new XY(Math.max(0, patch.getTopLeft().getX() - padding), Math.max(0, patch.getTopLeft().getY() - padding)),
-                                new XY(Math.min(padding, patch.getTopLeft().getX()) , Math.min(padding, patch.getTopLeft().getY())));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pTopLeft, patch))
-                        {
-                            paddings[7] = pTopLeft;
-                        }
-                    }
-                    if(patch.getBottomRight().getX() < scenario.getGrid().getBottomRight().getX())
-                    {
-                        Rectangle pRight = new Rectangle(
-                                new XY(patch.getBottomRight().getX(), patch.getTopLeft().getY()),
-                                new XY(Math.min(padding, scenario.getGrid().getBottomRight().getX() - patch.getBottomRight().getX()), patch.getSize().getY()));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pRight, patch))
-                        {
-                            paddings[2] = pRight;
-                        }
-                    }
-                    if(patch.getTopLeft().getY() > 0 && patch.getBottomRight().getX() < scenario.getGrid().getBottomRight().getX())
-                    {
-                        Rectangle pTopRight = new Rectangle(
-                                new XY(patch.getBottomRight().getX(), Math.max(0, patch.getTopLeft().getY() - padding)),
-                                new XY(Math.min(padding, scenario.getGrid().getBottomRight().getX() - patch.getBottomRight().getX()), Math.min(padding, patch.getTopLeft().getY())));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pTopRight, patch))
-                        {
-                            paddings[1] = pTopRight;
-                        }
-                    }
-                    if(patch.getBottomRight().getY() < scenario.getGrid().getBottomRight().getY())
-                    {
-                        Rectangle pBottom = new Rectangle(
-                                new XY(patch.getTopLeft().getX(), patch.getBottomRight().getY()),
-                                new XY(patch.getSize().getX(), Math.min(padding, scenario.getGrid().getBottomRight().getY() - patch.getBottomRight().getY())));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pBottom, patch))
-                        {
-                            paddings[4] = pBottom;
-                        }
-                    }
-                    if(patch.getTopLeft().getX() > 0 && patch.getBottomRight().getY() < scenario.getGrid().getBottomRight().getY())
-                    {
-                        Rectangle pBottomLeft = new Rectangle(
-                                new XY(Math.max(0, patch.getTopLeft().getX() - padding), patch.getBottomRight().getY()),
-                                new XY(Math.min(padding, patch.getTopLeft().getX()), Math.min(padding, scenario.getGrid().getBottomRight().getY() - patch.getBottomRight().getY())));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pBottomLeft, patch))
-                        {
-                            paddings[5] = pBottomLeft;
-                        }
-                    }
-                    if(patch.getBottomRight().getX() < scenario.getGrid().getBottomRight().getX() && patch.getBottomRight().getY() < scenario.getGrid().getBottomRight().getY())
+                    continue;
+                }
+                int firstColumn = column;
+                while(firstColumn > 0 && xs[firstColumn] > padding.getTopLeft().getX())
+                {
+                    firstColumn--;
+                }
+                int lastColumn = column;
+                while(lastColumn < columns - 1 && xs[lastColumn + 1] < padding.getBottomRight().getX())
+                {
+                    lastColumn++;
+                }
+                int firstRow = row;
+                while(firstRow > 0 && ys[firstRow] > padding.getTopLeft().getY())
+                {
+                    firstRow--;
+                }
+                int lastRow = row;
+                while(lastRow < ys.length - 2 && ys[lastRow + 1] < padding.getBottomRight().getY())
+                {
+                    lastRow++;
+                }
+                for(int r=firstRow; r <= lastRow; r++)
+                {
+                    for(int c=firstColumn; c <= lastColumn; c++)
                     {
-                        Rectangle pBottomRight = new Rectangle(
-                                new XY(patch.getBottomRight().getX(), patch.getBottomRight().getY()),
-                                new XY(Math.min(padding, scenario.getGrid().getBottomRight().getX() - patch.getBottomRight().getX()), Math.min(padding, scenario.getGrid().getBottomRight().getY() - patch.getBottomRight().getY())));
-                        if(com.pseuco.np20.simulation.common.Utils.mayPropagateFrom(scenario, pBottomRight, patch))
+                        int j = r * columns + c;
+                        if(j != i && patches[j].getPatchGrid().overlaps(padding))
                         {
-                            paddings[3] = pBottomRight;
+                            producers.putIfAbsent(j, k);
                         }
                     }
-
-                    Patch p = new Patch(finalI, ticksAllowed, scenario, validator, patch, paddings, scenarioPopulation);
-                    patches[finalI] = p;
                 }
-            };
-            helpers[i].start();
+            }
+
+            // If one of the paddings of patch i overlaps with the patchGrid of patch j
+            // Then j has to hand the people in that overlap over to i
+            for(Map.Entry<Integer, Integer> producer : producers.entrySet())
+            {
+                Patch pj = patches[producer.getKey()];
+                Rectangle padding = pi.getPaddings()[producer.getValue()];
+                BorderChannel c = new BorderChannel(producer.getKey(), i, pj.getPatchGrid().intersect(padding), scenario.getParameters(), pStartTick / ticksAllowed);
+                pj.addChannel(c);
+                pi.addChannel(c);
+            }
         }
+    }
 
-        for(int i=0; i < patchRectangles.size(); i++)
+    // We look up the patch every person starts in, so the patches do not have to scan the whole population
+    // Returns the rows of the given population for every patch, people outside of the grid belong to no patch
+    private int[][] routePopulation(Population pPopulation)
+    {
+        int[] xs = getBounds(partition.getX(), scenario.getGridSize().getX());
+        int[] ys = getBounds(partition.getY(), scenario.getGridSize().getY());
+        int columns = xs.length - 1;
+
+        int[] owners = new int[pPopulation.size()];
+        int[] counts = new int[columns * (ys.length - 1)];
+        for(int i=0; i < pPopulation.size(); i++)
         {
-            try
+            int column = getStripe(xs, pPopulation.getX(i));
+            int row = getStripe(ys, pPopulation.getY(i));
+            owners[i] = column < 0 || row < 0 ? -1 : row * columns + column;
+            if(owners[i] >= 0)
             {
-                helpers[i].join();
+                counts[owners[i]]++;
             }
-            catch(InterruptedException e)
+        }
+
+        int[][] rows = new int[counts.length][];
+        for(int j=0; j < counts.length; j++)
+        {
+            rows[j] = new int[counts[j]];
+            counts[j] = 0;
+        }
+        for(int i=0; i < owners.length; i++)
+        {
+            if(owners[i] >= 0)
             {
-                e.printStackTrace();
+                rows[owners[i]][counts[owners[i]]++] = i;
             }
         }
+        return rows;
+    }
 
-        patchCount = patchRectangles.size();
-        for(int i=0; i < patchCount; i++)
+    // The stripe between two bounds the given coordinate lies in, or -1 if it lies outside of the grid
+    private static int getStripe(int[] pBounds, int pCoordinate)
+    {
+        if(pCoordinate < 0 || pCoordinate >= pBounds[pBounds.length - 1])
         {
-            Patch pi = patches[i];
-            for(int j=i+1; j < patchCount; j++)
+            return -1;
+        }
+        // The last stripe starting at or before the coordinate, empty stripes are skipped this way
+        int low = 0;
+        int high = pBounds.length - 2;
+        while(low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+            if(pBounds[middle] <= pCoordinate)
             {
-                Patch pj = patches[j];
-                for(int k=0; k < 8; k++)
-                {
-                    //System.out.println(k + " " + pi.getPaddings()[k]);
-                    // If one of the paddings of patch i overlaps with the patchGrid of patch j
-                    // Then they require a monitor for synchronisation
-                    if(pi.getPaddings()[k] != null)
-                    {
-                        if(pj.getPatchGrid().overlaps(pi.getPaddings()[k]))
-                        {
-                            Monitor m = new Monitor(pi, i, pj, j);
-                            m.setIntersection(j, pj.getPatchGrid().intersect(pi.getPaddings()[k]));
-                            int w = (k + 4) % 8;
-                            m.setIntersection(i, pi.getPatchGrid().intersect(pj.getPaddings()[w]));
-
-                            if(monitors.add(m))
-                            {
-                                pi.addMonitor(m);
-                                pj.addMonitor(m);
-                            }
-                        }
-                    }
-                }
+                low = middle;
+            }
+            else
+            {
+                high = middle - 1;
             }
         }
-//        System.out.println("Patches: " + patchCount);
-//        System.out.println("Monitors: " + monitors.size());
+        return low;
+    }
+
+    // The cut lines of one axis together with both ends of the grid
+    private static int[] getBounds(List<Integer> pCuts, int pLength)
+    {
+        int[] bounds = new int[pCuts.size() + 2];
+        for(int i=0; i < pCuts.size(); i++)
+        {
+            bounds[i + 1] = pCuts.get(i);
+        }
+        bounds[bounds.length - 1] = pLength;
+        return bounds;
     }
 
     @Override
@@ -298,87 +450,202 @@ public class Rocket implements Simulation
         return new Output(scenario, tracesFinal, statistics);
     }
 
+    // The metrics may be registered via JMX or written to a file while the simulation is running
+    public RocketMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    // Replaces the partition of the scenario, e.g. by one planned by the PartitionPlanner
+    // Has to be called before the simulation is run
+    public void setPartition(Partition pPartition)
+    {
+        partition = pPartition;
+    }
+
+    // Every given number of synchronisations, all patches stop and we compare the time they spent ticking
+    // If the slowest patch took longer than the given tolerance times the average, the partition is planned anew
+    // for the current positions of the people and the patches are rebuilt
+    // An interval of 0 disables rebalancing
+    // Has to be called before the simulation is run
+    public void setRebalancing(int pInterval, double pTolerance)
+    {
+        if(pInterval < 0)
+        {
+            throw new IllegalArgumentException("The rebalance interval must not be negative");
+        }
+        rebalanceInterval = pInterval;
+        rebalanceTolerance = pTolerance;
+    }
+
     @Override
-    public void run()
+    public void setTraceWriter(TraceWriter pTraceWriter)
     {
-        populate();
-        Thread initStatsThread = new Thread()
+        traceWriter = pTraceWriter;
+    }
+
+    // The patches start with the people of the checkpoint at its tick, the output before is taken over
+    // Has to be called before the simulation is run
+    @Override
+    public void resume(Checkpoint pCheckpoint)
+    {
+        resumeFrom = pCheckpoint;
+    }
+
+    // The checkpoints are taken at the first synchronisation after every given number of ticks
+    // Has to be called before the simulation is run
+    @Override
+    public void setCheckpointWriter(CheckpointWriter pCheckpointWriter, int pInterval)
+    {
+        if(pInterval <= 0)
         {
-            public void run()
-            {
-                initStatistics();
-            }
-        };
-        initStatsThread.start();
-        initTraces();
-        initThreads();
+            throw new IllegalArgumentException("The checkpoint interval must be positive");
+        }
+        checkpointWriter = pCheckpointWriter;
+        checkpointInterval = pInterval;
+    }
 
-        for(int i=0; i < patchCount; i++)
+    private void runPatches(ExecutorService pExecutor) throws InterruptedException
+    {
+        switch(execution)
         {
-            patches[i].start();
+            case POOL:
+                new PatchScheduler(patches, pExecutor).run();
+                break;
+            case PLATFORM_THREADS:
+                new PatchThreads(patches, PatchThreads.platformThreads()).run();
+                break;
+            case VIRTUAL_THREADS:
+                new PatchThreads(patches, PatchThreads.virtualThreads()).run();
+                break;
         }
+    }
 
-        try
+    // We compare the time the patches spent ticking since the last check
+    private boolean isImbalanced()
+    {
+        long max = 0;
+        long sum = 0;
+        for(Patch patch : patches)
         {
-            initStatsThread.join();
+            long nanos = patch.takeTickNanos();
+            max = Math.max(max, nanos);
+            sum += nanos;
         }
-        catch(InterruptedException e)
+        return max > rebalanceTolerance * sum / patches.length;
+    }
+
+    // All patches have stopped at the given synchronisation
+    // We gather the people they own, plan a new partition for them and let new patches take over
+    private void rebalance(ExecutorService pExecutor, int pTick) throws InterruptedException
+    {
+        Population current = new Population(scenario.getParameters(), scenarioPopulation.size());
+        for(Patch patch : patches)
         {
-            e.printStackTrace();
+            patch.collectPopulation(current);
         }
+        current.sortById();
 
-        for(int i=0; i < patchCount; i++)
+        Partition planned = new PartitionPlanner(scenario, padding, current).plan(
+                partition.getX().size() + 1, partition.getY().size() + 1);
+        Map<Integer, Rectangle> rectangles = cutPatches(planned);
+        List<PropagationAnalysis.Reach> reaches = analyse(pExecutor, rectangles);
+
+        // The new patches have to get along with the ticks between synchronisations we settled on
+        // Otherwise we keep the current patches
+        if(ticksAllowed > minTicksAllowed && getTicksAllowed(reaches) < ticksAllowed)
         {
-            try
+            return;
+        }
+
+        partition = planned;
+        initPatches(pExecutor, rectangles, reaches, current, pTick);
+
+        accumulator.setPatchCount(patches[0].getFirstEntry(), patchCount);
+        if(traceMerger != null)
+        {
+            traceMerger.setPatchCount(patches[0].getFirstEntry(), patchCount);
+            for(Patch patch : patches)
             {
-                patches[i].join();
+                patch.setTraceMerger(traceMerger);
             }
-            catch(InterruptedException e)
+        }
+        if(checkpointMerger != null)
+        {
+            checkpointMerger.setPatchCount(pTick, patchCount);
+            for(Patch patch : patches)
             {
-                e.printStackTrace();
+                patch.setCheckpointMerger(checkpointMerger);
             }
+        }
+    }
 
-            for(String queryKey : patches[i].getStatistics().keySet())
+    @Override
+    public void run()
+    {
+        populate();
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try
+        {
+            // Patches walled off by obstacles may run longer on their own, but all patches synchronise together
+            Map<Integer, Rectangle> rectangles = cutPatches(partition);
+            analysis = new PropagationAnalysis(scenario);
+            List<PropagationAnalysis.Reach> reaches = analyse(executor, rectangles);
+            ticksAllowed = Math.max(minTicksAllowed, getTicksAllowed(reaches));
+            initStatistics(rectangles.size());
+
+            // A resumed simulation starts with the people of the checkpoint and takes over its statistics
+            int startTick = 0;
+            Population startPopulation = scenarioPopulation;
+            if(resumeFrom != null)
+            {
+                startTick = resumeFrom.getTick();
+                startPopulation = resumeFrom.getPopulation();
+                accumulator.restore(resumeFrom.getStatistics(), startTick + 1);
+            }
+            metrics.start(accumulator);
+            initPatches(executor, rectangles, reaches, startPopulation, startTick);
+            initTraces(startTick);
+            initCheckpoints(startTick);
+
+            // Without rebalancing, the patches run to the end in one go
+            // Rebalancing happens at synchronisations only, which are multiples of the ticks allowed after the start tick
+            int tick = startTick;
+            while(tick < scenario.getTicks())
             {
-                List<Statistics> list = patches[i].getStatistics().get(queryKey);
-                for(int j=0; j < list.size(); j++)
+                int endTick = scenario.getTicks();
+                if(rebalanceInterval > 0)
                 {
-                    statistics2.get(queryKey).get(j).addStats(list.get(j));
+                    endTick = (int) Math.min(endTick, (tick / ticksAllowed + (long) rebalanceInterval) * ticksAllowed);
                 }
-            }
+                for(Patch patch : patches)
+                {
+                    patch.setEndTick(endTick);
+                }
+                runPatches(executor);
+                tick = endTick;
 
-            if(scenario.getTrace())
-            {
-                for(int j=0; j < traces.size(); j++)
+                if(tick < scenario.getTicks() && isImbalanced())
                 {
-                    traces.get(j).getPopulation().addAll(patches[i].getTraces().get(j).getPopulation());
+                    rebalance(executor, tick);
                 }
             }
         }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating", e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
 
-        // Below is a duplicate person finder
-//        int tSize = traces.get(scenario.getTicks()).getPopulation().size();
-//        System.out.println("Rocket last trace size " + tSize);
-//        for(int i=0; i < tSize; i++)
-//        {
-//            for(int j=0; j < tSize; j++)
-//            {
-//                if(i!=j && traces.get(scenario.getTicks()).getPopulation().get(i).getInfo().getName().equals(traces.get(scenario.getTicks()).getPopulation().get(j).getInfo().getName()))
-//                {
-//                    System.out.println("dup found: at " + i + " " + traces.get(scenario.getTicks()).getPopulation().get(i).getInfo().getName() + " and at " + j + " " + traces.get(scenario.getTicks()).getPopulation().get(j).getInfo().getName());
-//                }
-//            }
-//        }
-        
-        statistics.replaceAll( (k, v) -> statistics2.get(k).stream().map(RWStatistics::getStatistics).collect(Collectors.toList()) );
-
-        if(scenario.getTrace())
+        String[] queryKeys = accumulator.getQueryKeys();
+        for(int i=0; i < queryKeys.length; i++)
         {
-            for(int i=0; i < traces.size(); i++)
-            {
-                traces.get(i).getPopulation().sort( (PersonInfoId p1, PersonInfoId p2) -> p1.getId() - p2.getId() );
-                tracesFinal.add(new TraceEntry(traces.get(i).getPopulation().stream().map(PersonInfoId::getInfo).collect(Collectors.toList())));
-            }
+            statistics.put(queryKeys[i], accumulator.getStatistics(i));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,254 @@
+package com.pseuco.np20.simulation.rocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Collects the metrics of the patches of a rocket while it is running
+// The patches record their metrics on their own, we only read them when asked via JMX or when writing the metrics file
+public class RocketMetrics implements RocketMetricsMXBean, AutoCloseable
+{
+    private static final AtomicInteger instances = new AtomicInteger(0);
+
+    private final int ticks;
+    private final ObjectMapper objectMapper;
+
+    private volatile Patch[] patches;
+    private volatile StatisticsAccumulator accumulator;
+    private volatile TraceMerger traceMerger;
+    private volatile long startNanos;
+
+    private ObjectName objectName;
+    private ScheduledExecutorService writer;
+    private File file;
+
+    public RocketMetrics(int pTicks)
+    {
+        ticks = pTicks;
+        objectMapper = new ObjectMapper();
+        patches = new Patch[0];
+        startNanos = System.nanoTime();
+    }
+
+    // Called by the rocket when it starts simulating
+    void start(StatisticsAccumulator pAccumulator)
+    {
+        accumulator = pAccumulator;
+        startNanos = System.nanoTime();
+    }
+
+    // Called by the rocket whenever it creates new patches
+    void setPatches(Patch[] pPatches)
+    {
+        patches = pPatches;
+    }
+
+    // Called by the rocket when it streams the trace
+    void setTraceMerger(TraceMerger pTraceMerger)
+    {
+        traceMerger = pTraceMerger;
+    }
+
+    // Registers the metrics with the platform MBean server
+    public synchronized void register()
+    {
+        if(objectName != null)
+        {
+            return;
+        }
+        try
+        {
+            objectName = new ObjectName("com.pseuco.np20:type=Rocket,id=" + instances.getAndIncrement());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("Registering the metrics failed", e);
+        }
+    }
+
+    // Writes the metrics to the given file every given number of milliseconds and once more when closed
+    // The file is replaced as a whole, so readers never see a partially written file
+    public synchronized void startWriting(File pFile, long pIntervalMillis)
+    {
+        if(writer != null)
+        {
+            throw new IllegalStateException("The metrics are written already");
+        }
+        file = pFile;
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rocket-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleAtFixedRate(this::writeFile, pIntervalMillis, pIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if(writer != null)
+        {
+            writer.shutdownNow();
+            writer = null;
+            writeFile();
+        }
+        if(objectName != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch(JMException e)
+            {
+                throw new IllegalStateException("Unregistering the metrics failed", e);
+            }
+            objectName = null;
+        }
+    }
+
+    private void writeFile()
+    {
+        try
+        {
+            File temporary = new File(file.getPath() + ".tmp");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(temporary, toJson());
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException("Writing the metrics failed", e);
+        }
+    }
+
+    public ObjectNode toJson()
+    {
+        ObjectNode json = objectMapper.createObjectNode();
+        json.put("ticks", getTicks());
+        json.put("completedTicks", getCompletedTicks());
+        json.put("tickRate", getTickRate());
+        json.put("maxPendingTraceTicks", getMaxPendingTraceTicks());
+        ArrayNode patchesJson = json.putArray("patches");
+        for(Patch patch : patches)
+        {
+            PatchMetrics metrics = patch.getMetrics();
+            ObjectNode patchJson = patchesJson.addObject();
+            patchJson.put("id", metrics.getPatchId());
+            patchJson.put("currentTick", metrics.getCurrentTick());
+            patchJson.put("population", metrics.getPopulationSize());
+            patchJson.put("computeMillis", TimeUnit.NANOSECONDS.toMillis(metrics.getComputeNanos()));
+            patchJson.put("synchronizeMillis", TimeUnit.NANOSECONDS.toMillis(metrics.getSynchronizeNanos()));
+            patchJson.put("waits", metrics.getWaits());
+        }
+        return json;
+    }
+
+    @Override
+    public int getTicks()
+    {
+        return ticks;
+    }
+
+    // The initial state is the first entry, so the ticks are one less than the entries
+    @Override
+    public int getCompletedTicks()
+    {
+        StatisticsAccumulator current = accumulator;
+        return current == null ? 0 : Math.max(0, current.getCompletedEntries() - 1);
+    }
+
+    // The completed ticks per second since the start
+    @Override
+    public double getTickRate()
+    {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? getCompletedTicks() / seconds : 0;
+    }
+
+    // The most ticks the trace merger has held at once, 0 if the scenario is not traced
+    @Override
+    public int getMaxPendingTraceTicks()
+    {
+        TraceMerger current = traceMerger;
+        return current == null ? 0 : current.getMaxPendingCount();
+    }
+
+    @Override
+    public int getPatchCount()
+    {
+        return patches.length;
+    }
+
+    @Override
+    public int[] getCurrentTicks()
+    {
+        Patch[] current = patches;
+        int[] values = new int[current.length];
+        for(int i=0; i < current.length; i++)
+        {
+            values[i] = current[i].getMetrics().getCurrentTick();
+        }
+        return values;
+    }
+
+    @Override
+    public int[] getPopulationSizes()
+    {
+        Patch[] current = patches;
+        int[] values = new int[current.length];
+        for(int i=0; i < current.length; i++)
+        {
+            values[i] = current[i].getMetrics().getPopulationSize();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getComputeMillis()
+    {
+        Patch[] current = patches;
+        long[] values = new long[current.length];
+        for(int i=0; i < current.length; i++)
+        {
+            values[i] = TimeUnit.NANOSECONDS.toMillis(current[i].getMetrics().getComputeNanos());
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getSynchronizeMillis()
+    {
+        Patch[] current = patches;
+        long[] values = new long[current.length];
+        for(int i=0; i < current.length; i++)
+        {
+            values[i] = TimeUnit.NANOSECONDS.toMillis(current[i].getMetrics().getSynchronizeNanos());
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getWaits()
+    {
+        Patch[] current = patches;
+        long[] values = new long[current.length];
+        for(int i=0; i < current.length; i++)
+        {
+            values[i] = current[i].getMetrics().getWaits();
+        }
+        return values;
+    }
+}
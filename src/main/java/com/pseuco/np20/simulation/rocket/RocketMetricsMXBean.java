@@ -0,0 +1,26 @@
+package com.pseuco.np20.simulation.rocket;
+
+// The live metrics of a running rocket as exposed via JMX
+// The arrays hold one value per current patch, ordered by the patch index
+public interface RocketMetricsMXBean
+{
+    int getTicks();
+
+    int getCompletedTicks();
+
+    double getTickRate();
+
+    int getMaxPendingTraceTicks();
+
+    int getPatchCount();
+
+    int[] getCurrentTicks();
+
+    int[] getPopulationSizes();
+
+    long[] getComputeMillis();
+
+    long[] getSynchronizeMillis();
+
+    long[] getWaits();
+}
@@ -1,18 +1,191 @@
 package com.pseuco.np20.simulation.rocket;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.ObstacleMask;
 import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Query;
+import com.pseuco.np20.model.Rectangle;
 import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+import com.pseuco.np20.simulation.common.Checkpoint;
+import com.pseuco.np20.simulation.common.CheckpointWriter;
+import com.pseuco.np20.simulation.common.Population;
+import com.pseuco.np20.simulation.common.QueryRegions;
 import com.pseuco.np20.simulation.common.Simulation;
+import com.pseuco.np20.simulation.common.TraceWriter;
 
 
 /**
- * The implementation of assignment 2 should go here.
+ * A work-stealing, fork-join based simulation engine.
+ *
+ * <p>
+ * Instead of running every patch on its own thread and exchanging paddings, a tick is
+ * split into phases which are each computed by one task per patch on a fork-join pool
+ * sized to the available cores. Tasks of crowded patches split themselves further so
+ * that idle workers can steal the remaining work.
+ * </p>
  *
  * <p>
- * This class has to implement the <em>Simulation</em> interface.
+ * The phases reproduce the sequential semantics of <em>Slug</em> exactly: A person only
+ * ever bumps into another person if that person already stood on the target cell at the
+ * beginning of the tick or if it has a smaller id and moved onto the target cell in the
+ * same tick. Hence, among all persons heading for a free cell, the one with the smallest
+ * id gets it. This is decided with a compare-and-set minimum on a grid of claims.
  * </p>
  */
 public class Starship implements Simulation {
+    /**
+     * The number of persons below which a task does not split itself any further.
+     */
+    private static final int GRAIN = 512;
+
+    private static final int NO_CLAIM = Integer.MAX_VALUE;
+    private static final int NO_CELL = -1;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private static final byte SUSCEPTIBLE = (byte) InfectionState.State.SUSCEPTIBLE.ordinal();
+    private static final byte INFECTED = (byte) InfectionState.State.INFECTED.ordinal();
+    private static final byte INFECTIOUS = (byte) InfectionState.State.INFECTIOUS.ordinal();
+    private static final byte RECOVERED = (byte) InfectionState.State.RECOVERED.ordinal();
+
+    private enum Phase {
+        /**
+         * Advances the RNG and the infection state and claims the target cell.
+         */
+        MOVE,
+
+        /**
+         * Moves the persons that won their claim and registers the spreaders.
+         */
+        COMMIT,
+
+        /**
+         * Spreads the infection and records statistics and the trace.
+         */
+        INFECT,
+
+        /**
+         * Only records statistics and the trace.
+         */
+        OBSERVE
+    }
+
+    private class Sweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Phase phase;
+        private final int from;
+        private final int to;
+
+        public Sweep(Phase phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > GRAIN) {
+                final int middle = (this.from + this.to) >>> 1;
+                invokeAll(
+                    new Sweep(this.phase, this.from, middle),
+                    new Sweep(this.phase, middle, this.to)
+                );
+                return;
+            }
+            switch (this.phase) {
+                case MOVE:
+                    for (int index = this.from; index < this.to; index++) {
+                        Starship.this.move(Starship.this.order[index]);
+                    }
+                    break;
+                case COMMIT:
+                    for (int index = this.from; index < this.to; index++) {
+                        Starship.this.commit(Starship.this.order[index]);
+                    }
+                    break;
+                case INFECT:
+                case OBSERVE:
+                    final long[] counts = new long[Starship.this.regions.getRegionCount() * QueryRegions.STATES];
+                    for (int index = this.from; index < this.to; index++) {
+                        final int person = Starship.this.order[index];
+                        if (this.phase == Phase.INFECT) {
+                            Starship.this.infect(person);
+                        }
+                        Starship.this.observe(person, counts);
+                    }
+                    for (int slot = 0; slot < counts.length; slot++) {
+                        if (counts[slot] != 0) {
+                            Starship.this.counts.addAndGet(slot, counts[slot]);
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+
+    private final Scenario scenario;
+    private final Parameters parameters;
+
+    private final int width;
+    private final int height;
+
+    private final ObstacleMask obstacles;
+
+    private final QueryRegions regions;
+    private final String[] queryKeys;
+
+    private final int[] columnOfX;
+    private final int[] rowOfY;
+    private final int columns;
+    private final int patchCount;
+
+    private final int populationSize;
+    private final Population population;
+
+    private final int[] target;
+    private final byte[] heading;
+    private final int[] spreading;
+
+    private final AtomicIntegerArray occupancy;
+    private final AtomicIntegerArray claims;
+    private final AtomicIntegerArray spreaders;
+
+    private final int[] patchOf;
+    private final int[] order;
+    private final int[] patchStart;
+
+    private final AtomicLongArray counts;
+    private final long[] snapshot;
+    private PersonInfo[] traceEntry;
+
+    private final List<TraceEntry> trace = new ArrayList<>();
+    private TraceWriter traceWriter = null;
+    private final Map<String, List<Statistics>> statistics = new HashMap<>();
+
+    private Checkpoint checkpoint = null;
+    private CheckpointWriter checkpointWriter = null;
+    private int checkpointInterval;
+    private int checkpointedEntries = 0;
+
     /**
      * Constructs a starship with the given parameters.
      *
@@ -23,17 +196,341 @@ public class Starship implements Simulation {
      * @param scenario The scenario to simulate.
      */
     public Starship(Scenario scenario) {
-        // your concurrent implementation of assignment 2 goes here
-        throw new RuntimeException("not implemented");
+        this.scenario = scenario;
+        this.parameters = scenario.getParameters();
+
+        this.width = scenario.getGridSize().getX();
+        this.height = scenario.getGridSize().getY();
+        final int cells = this.width * this.height;
+
+        this.obstacles = scenario.getObstacleMask();
+
+        this.queryKeys = new String[scenario.getQueries().size()];
+        final List<Rectangle> queryAreas = new ArrayList<>();
+        int query = 0;
+        for (Map.Entry<String, Query> entry : scenario.getQueries().entrySet()) {
+            this.queryKeys[query] = entry.getKey();
+            queryAreas.add(entry.getValue().getArea());
+            this.statistics.put(entry.getKey(), new ArrayList<>());
+            query++;
+        }
+        this.regions = new QueryRegions(scenario.getGrid(), queryAreas, scenario.getGrid());
+
+        this.columnOfX = this.cutIndices(scenario.getPartition().getX(), this.width);
+        this.rowOfY = this.cutIndices(scenario.getPartition().getY(), this.height);
+        this.columns = scenario.getPartition().getX().size() + 1;
+        this.patchCount = scenario.getNumberOfPatches();
+
+        this.populationSize = scenario.getPopulation().size();
+        this.population = new Population(this.parameters, this.populationSize);
+
+        this.target = new int[this.populationSize];
+        this.heading = new byte[this.populationSize];
+        this.spreading = new int[this.populationSize];
+
+        this.occupancy = new AtomicIntegerArray(cells);
+        this.claims = new AtomicIntegerArray(cells);
+        this.spreaders = new AtomicIntegerArray(cells);
+        for (int cell = 0; cell < cells; cell++) {
+            this.claims.set(cell, NO_CLAIM);
+            this.spreaders.set(cell, NO_CELL);
+        }
+
+        final Population initial = Population.of(this.parameters, scenario.getPopulation());
+        for (int id = 0; id < this.populationSize; id++) {
+            this.population.add(initial, id);
+            this.target[id] = NO_CELL;
+            this.spreading[id] = NO_CELL;
+            this.occupancy.getAndIncrement(this.cell(initial.getX(id), initial.getY(id)));
+        }
+
+        this.patchOf = new int[this.populationSize];
+        this.order = new int[this.populationSize];
+        this.patchStart = new int[this.patchCount + 1];
+
+        this.counts = new AtomicLongArray(this.regions.getRegionCount() * QueryRegions.STATES);
+        this.snapshot = new long[this.counts.length()];
+    }
+
+    private int[] cutIndices(List<Integer> cuts, int size) {
+        // maps every coordinate to the index of the partition stripe it belongs to
+        final int[] indices = new int[size];
+        final Iterator<Integer> iterator = cuts.iterator();
+        int stripe = 0;
+        int next = iterator.hasNext() ? iterator.next() : size;
+        for (int coordinate = 0; coordinate < size; coordinate++) {
+            while (coordinate >= next) {
+                stripe++;
+                next = iterator.hasNext() ? iterator.next() : size;
+            }
+            indices[coordinate] = stripe;
+        }
+        return indices;
+    }
+
+    private int cell(int x, int y) {
+        return y * this.width + x;
+    }
+
+    private void move(int person) {
+        // forget the spreader registration and the claim of the previous tick
+        if (this.spreading[person] != NO_CELL) {
+            this.spreaders.set(this.spreading[person], NO_CELL);
+            this.spreading[person] = NO_CELL;
+        }
+
+        this.population.advance(person);
+
+        final Direction heading = this.population.getHeading(person);
+        final int targetX = this.population.getX(person) + heading.getVector().getX();
+        final int targetY = this.population.getY(person) + heading.getVector().getY();
+
+        // we would bump into a wall, an obstacle or a person which has not moved yet
+        if (
+            targetX < 0 || targetX >= this.width || targetY < 0 || targetY >= this.height
+            || this.obstacles.onObstacle(targetX, targetY)
+            || this.occupancy.get(this.cell(targetX, targetY)) > 0
+        ) {
+            this.population.stop(person);
+            this.target[person] = NO_CELL;
+            return;
+        }
+
+        final int cell = this.cell(targetX, targetY);
+        this.target[person] = cell;
+        this.heading[person] = (byte) heading.ordinal();
+
+        int claim = this.claims.get(cell);
+        while (person < claim && !this.claims.compareAndSet(cell, claim, person)) {
+            claim = this.claims.get(cell);
+        }
+    }
+
+    private void commit(int person) {
+        final int cell = this.target[person];
+        if (cell != NO_CELL) {
+            if (this.claims.get(cell) == person) {
+                // we won the claim, every other contender bumps into us
+                this.occupancy.getAndDecrement(this.cell(this.population.getX(person), this.population.getY(person)));
+                this.occupancy.getAndIncrement(cell);
+                this.population.moveTo(person, cell % this.width, cell / this.width, DIRECTIONS[this.heading[person]]);
+            } else {
+                this.population.stop(person);
+            }
+        }
+
+        if (this.population.isInfectious(person) && this.population.isCoughing(person)) {
+            // any of the spreaders on a cell may mark it
+            final int position = this.cell(this.population.getX(person), this.population.getY(person));
+            this.spreading[person] = position;
+            this.spreaders.set(position, person);
+        }
+    }
+
+    private void infect(int person) {
+        if (this.target[person] != NO_CELL) {
+            this.claims.set(this.target[person], NO_CLAIM);
+            this.target[person] = NO_CELL;
+        }
+
+        if (!this.population.isSusceptible(person) || !this.population.isBreathing(person)) {
+            return;
+        }
+
+        // look for a coughing, infectious person within the infection radius
+        final int radius = this.parameters.getInfectionRadius();
+        final int personX = this.population.getX(person);
+        final int personY = this.population.getY(person);
+        for (int otherY = Math.max(0, personY - radius); otherY <= Math.min(this.height - 1, personY + radius); otherY++) {
+            final int reach = radius - Math.abs(otherY - personY);
+            for (int otherX = Math.max(0, personX - reach); otherX <= Math.min(this.width - 1, personX + reach); otherX++) {
+                if (this.spreaders.get(this.cell(otherX, otherY)) != NO_CELL) {
+                    this.population.infect(person);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void observe(int person, long[] counts) {
+        // the persons are counted per region, the queries are summed up afterwards
+        final int region = this.regions.regionOf(this.population.getX(person), this.population.getY(person));
+        counts[region * QueryRegions.STATES + this.population.getState(person).ordinal()]++;
+
+        if (this.traceEntry != null) {
+            this.traceEntry[person] = this.population.getInfo(person);
+        }
+    }
+
+    private void partition() {
+        // we sort the persons into the patches they are currently located in
+        Arrays.fill(this.patchStart, 0);
+        for (int person = 0; person < this.populationSize; person++) {
+            this.patchOf[person] = (
+                this.rowOfY[this.population.getY(person)] * this.columns
+                + this.columnOfX[this.population.getX(person)]
+            );
+            this.patchStart[this.patchOf[person] + 1]++;
+        }
+        for (int patch = 0; patch < this.patchCount; patch++) {
+            this.patchStart[patch + 1] += this.patchStart[patch];
+        }
+        final int[] fill = Arrays.copyOf(this.patchStart, this.patchCount);
+        for (int person = 0; person < this.populationSize; person++) {
+            this.order[fill[this.patchOf[person]]++] = person;
+        }
+    }
+
+    private void sweep(ForkJoinPool pool, Phase phase) {
+        final List<Sweep> tasks = new ArrayList<>(this.patchCount);
+        for (int patch = 0; patch < this.patchCount; patch++) {
+            if (this.patchStart[patch] < this.patchStart[patch + 1]) {
+                tasks.add(new Sweep(phase, this.patchStart[patch], this.patchStart[patch + 1]));
+            }
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    private void extendOutput(ForkJoinPool pool, Phase phase) {
+        // we extend the statistics and the trace while infecting respectively observing the population
+        if (this.scenario.getTrace()) {
+            this.traceEntry = new PersonInfo[this.populationSize];
+        }
+        for (int slot = 0; slot < this.counts.length(); slot++) {
+            this.counts.set(slot, 0);
+        }
+
+        this.sweep(pool, phase);
+
+        if (this.traceEntry != null) {
+            this.record(new TraceEntry(Arrays.asList(this.traceEntry)));
+            this.traceEntry = null;
+        }
+        for (int slot = 0; slot < this.snapshot.length; slot++) {
+            this.snapshot[slot] = this.counts.get(slot);
+        }
+        for (int query = 0; query < this.queryKeys.length; query++) {
+            this.statistics.get(this.queryKeys[query]).add(new Statistics(
+                this.regions.sum(query, this.snapshot, SUSCEPTIBLE),
+                this.regions.sum(query, this.snapshot, INFECTED),
+                this.regions.sum(query, this.snapshot, INFECTIOUS),
+                this.regions.sum(query, this.snapshot, RECOVERED)
+            ));
+        }
     }
 
     @Override
     public Output getOutput() {
-        throw new RuntimeException("not implemented");
+        return new Output(this.scenario, this.trace, this.statistics);
+    }
+
+    @Override
+    public void setTraceWriter(TraceWriter traceWriter) {
+        this.traceWriter = traceWriter;
+    }
+
+    @Override
+    public void resume(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter, int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("checkpoint interval must be positive");
+        }
+        this.checkpointWriter = checkpointWriter;
+        this.checkpointInterval = interval;
+    }
+
+    private void restore() {
+        // between ticks, the state beyond the persons is their occupancy of the cells
+        // the claims and spreaders are reset before the next tick reads them
+        this.population.clear();
+        final Population state = this.checkpoint.getPopulation();
+        for (int row = 0; row < state.size(); row++) {
+            this.population.add(state, row);
+        }
+        for (int cell = 0; cell < this.occupancy.length(); cell++) {
+            this.occupancy.set(cell, 0);
+        }
+        for (int person = 0; person < this.populationSize; person++) {
+            this.occupancy.getAndIncrement(this.cell(this.population.getX(person), this.population.getY(person)));
+        }
+
+        for (TraceEntry entry : this.checkpoint.getTrace()) {
+            this.record(entry);
+        }
+        for (Map.Entry<String, List<Statistics>> query : this.checkpoint.getStatistics().entrySet()) {
+            this.statistics.get(query.getKey()).addAll(query.getValue());
+        }
+    }
+
+    private void record(TraceEntry entry) {
+        if (this.checkpointWriter != null) {
+            this.checkpointWriter.writeTrace(entry);
+        }
+        if (this.traceWriter != null) {
+            this.traceWriter.write(entry);
+        } else {
+            this.trace.add(entry);
+        }
+    }
+
+    private void writeCheckpoint(int tick) {
+        // the checkpoint gets a copy of the persons, so we may go on while it is written
+        final Population snapshot = new Population(this.parameters, this.populationSize);
+        for (int person = 0; person < this.populationSize; person++) {
+            snapshot.add(this.population, person);
+        }
+        final Map<String, List<Statistics>> statistics = new LinkedHashMap<>();
+        for (String queryKey : this.queryKeys) {
+            final List<Statistics> entries = this.statistics.get(queryKey);
+            statistics.put(queryKey, new ArrayList<>(entries.subList(this.checkpointedEntries, entries.size())));
+        }
+        this.checkpointedEntries = tick + 1;
+        this.checkpointWriter.writeCheckpoint(tick, Collections.singletonList(snapshot), statistics);
     }
 
     @Override
     public void run() {
-        throw new RuntimeException("not implemented");
+        final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            int start = 0;
+            if (this.checkpoint != null) {
+                this.restore();
+                start = this.checkpoint.getTick();
+                this.partition();
+                if (this.checkpointWriter != null) {
+                    // the new checkpoint file starts with the state we resumed from
+                    this.writeCheckpoint(start);
+                }
+            } else {
+                this.partition();
+                this.extendOutput(pool, Phase.OBSERVE);
+            }
+
+            for (int tick = start; tick < this.scenario.getTicks(); tick++) {
+                this.sweep(pool, Phase.MOVE);
+                this.sweep(pool, Phase.COMMIT);
+                this.partition();
+                this.extendOutput(pool, Phase.INFECT);
+                if (
+                    this.checkpointWriter != null
+                    && (tick + 1) % this.checkpointInterval == 0 && tick + 1 < this.scenario.getTicks()
+                ) {
+                    this.writeCheckpoint(tick + 1);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
     }
-}
\ No newline at end of file
+}
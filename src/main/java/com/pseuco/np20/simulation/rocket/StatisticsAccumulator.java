@@ -0,0 +1,131 @@
+package com.pseuco.np20.simulation.rocket;
+
+import com.pseuco.np20.model.Statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Adds up the statistics of the patches tick by tick while they are running
+// Every patch adds its counts of a tick and then reports the tick, neither of which takes a lock
+// Once every patch has reported a tick, its statistics are final and may be read while the patches go on
+// The number of patches may change from one tick to another when Rocket rebalances the patches
+public class StatisticsAccumulator
+{
+    private static final int SUSCEPTIBLE = 0;
+    private static final int INFECTED = 1;
+    private static final int INFECTIOUS = 2;
+    private static final int RECOVERED = 3;
+    private static final int STATES = 4;
+
+    private final String[] queryKeys;
+    private final int entries;
+    private final int[] patchCounts;
+
+    // The counts are stored entry by entry, query by query and state by state
+    private final AtomicLongArray counts;
+    private final AtomicIntegerArray reported;
+    // All entries before this one are final
+    private final AtomicInteger completed;
+
+    public StatisticsAccumulator(String[] pQueryKeys, int pPatchCount, int pEntries)
+    {
+        queryKeys = pQueryKeys;
+        entries = pEntries;
+        patchCounts = new int[pEntries];
+        Arrays.fill(patchCounts, pPatchCount);
+        counts = new AtomicLongArray(pEntries * pQueryKeys.length * STATES);
+        reported = new AtomicIntegerArray(pEntries);
+        completed = new AtomicInteger(0);
+    }
+
+    public String[] getQueryKeys()
+    {
+        return queryKeys;
+    }
+
+    // From the given entry on, the ticks are reported by the given number of patches
+    // Must only be called while no patch is running
+    public void setPatchCount(int pFromEntry, int pPatchCount)
+    {
+        Arrays.fill(patchCounts, pFromEntry, patchCounts.length, pPatchCount);
+    }
+
+    // Takes over the given number of entries, e.g. from a checkpoint, which are final right away
+    // Must only be called while no patch is running
+    public void restore(Map<String, List<Statistics>> pStatistics, int pEntries)
+    {
+        for(int i=0; i < queryKeys.length; i++)
+        {
+            List<Statistics> list = pStatistics.get(queryKeys[i]);
+            for(int entry=0; entry < pEntries; entry++)
+            {
+                add(entry, i, list.get(entry));
+            }
+        }
+        completed.set(pEntries);
+    }
+
+    // The statistics of a patch for the given query, the query is the index of its key
+    public void add(int pEntry, int pQuery, Statistics pStatistics)
+    {
+        int offset = (pEntry * queryKeys.length + pQuery) * STATES;
+        counts.getAndAdd(offset + SUSCEPTIBLE, pStatistics.getSusceptible());
+        counts.getAndAdd(offset + INFECTED, pStatistics.getInfected());
+        counts.getAndAdd(offset + INFECTIOUS, pStatistics.getInfectious());
+        counts.getAndAdd(offset + RECOVERED, pStatistics.getRecovered());
+    }
+
+    // A patch has added all of its statistics of the given entry
+    // Whoever reports the last missing entry moves the completed entries on
+    public void report(int pEntry)
+    {
+        reported.incrementAndGet(pEntry);
+
+        int next = completed.get();
+        while(next < entries && reported.get(next) == patchCounts[next])
+        {
+            if(completed.compareAndSet(next, next + 1))
+            {
+                next++;
+            }
+            else
+            {
+                next = completed.get();
+            }
+        }
+    }
+
+    // The number of entries whose statistics are final
+    public int getCompletedEntries()
+    {
+        return completed.get();
+    }
+
+    // Only the statistics of completed entries are final
+    public Statistics getStatistics(int pEntry, int pQuery)
+    {
+        int offset = (pEntry * queryKeys.length + pQuery) * STATES;
+        return new Statistics(
+                counts.get(offset + SUSCEPTIBLE),
+                counts.get(offset + INFECTED),
+                counts.get(offset + INFECTIOUS),
+                counts.get(offset + RECOVERED));
+    }
+
+    // The statistics of the given query for all completed entries
+    public List<Statistics> getStatistics(int pQuery)
+    {
+        int end = getCompletedEntries();
+        List<Statistics> list = new ArrayList<>(end);
+        for(int i=0; i < end; i++)
+        {
+            list.add(getStatistics(i, pQuery));
+        }
+        return list;
+    }
+}
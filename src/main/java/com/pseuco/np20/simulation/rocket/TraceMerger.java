@@ -0,0 +1,182 @@
+package com.pseuco.np20.simulation.rocket;
+
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.TraceEntry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Merges the trace entries of the patches tick by tick
+// As soon as every patch has handed in its part of a tick, the tick is merged and passed on
+// Ticks are passed on in order, so we hold the ticks between the slowest and the fastest patch
+// Patches walled off from each other have no channels holding them together, so we hold them back ourselves:
+// A patch may only hand in a tick less than the window ahead of the next tick to pass on, so at most that many ticks are pending
+// Passing a tick on writes it out, so it is done outside the lock: the patch completing a tick queues it,
+// and whichever patch finds no one else writing passes on the queued ticks in order
+// The number of patches may change from one tick to another when Rocket rebalances the patches
+public class TraceMerger
+{
+    private final int populationSize;
+    private final int[] patchCounts;
+    private final Consumer<TraceEntry> sink;
+    private final int window;
+
+    private final AtomicReferenceArray<PersonInfo[]> pending;
+    private final int[] received;
+    private int nextEntry;
+    private final Deque<PersonInfo[]> completed;
+    private boolean passingOn;
+    private int passedEntry;
+    private final List<Runnable> waiting;
+    private int pendingCount;
+    private int maxPendingCount;
+
+    public TraceMerger(int pPopulationSize, int pPatchCount, int pEntries, int pWindow, Consumer<TraceEntry> pSink)
+    {
+        populationSize = pPopulationSize;
+        window = pWindow;
+        completed = new ArrayDeque<>();
+        passingOn = false;
+        passedEntry = 0;
+        waiting = new ArrayList<>();
+        pendingCount = 0;
+        maxPendingCount = 0;
+        patchCounts = new int[pEntries];
+        Arrays.fill(patchCounts, pPatchCount);
+        sink = pSink;
+        pending = new AtomicReferenceArray<>(pEntries);
+        received = new int[pEntries];
+        nextEntry = 0;
+    }
+
+    // From the given entry on, the ticks are handed in by the given number of patches
+    public synchronized void setPatchCount(int pFromEntry, int pPatchCount)
+    {
+        Arrays.fill(patchCounts, pFromEntry, patchCounts.length, pPatchCount);
+    }
+
+    // The entries before the given one have been passed on elsewhere, e.g. restored from a checkpoint
+    // Must only be called while no patch is running
+    public synchronized void skipTo(int pEntry)
+    {
+        nextEntry = pEntry;
+        passedEntry = pEntry;
+    }
+
+    // The most ticks which have been pending at once
+    public synchronized int getMaxPendingCount()
+    {
+        return maxPendingCount;
+    }
+
+    // Returns whether a patch may hand in the given tick
+    // Otherwise it has to wait like for a neighbour: it returns and the wakeup is run once the slowest patch has caught up
+    // The slowest patch is never held back and does not wait for the patches ahead at any synchronisation, so it always catches up
+    public synchronized boolean mayAdd(int pEntry, Runnable pWakeUp)
+    {
+        if(pEntry < passedEntry + window)
+        {
+            return true;
+        }
+        if(!waiting.contains(pWakeUp))
+        {
+            waiting.add(pWakeUp);
+        }
+        return false;
+    }
+
+    // The ids of the people are dense, so every person has a slot of its own in the tick
+    // The patches place their people without holding the lock, as no two of them own the same person
+    public void add(int pEntry, TraceEntryId pPart)
+    {
+        PersonInfo[] slots = getSlots(pEntry);
+        for(PersonInfoId person : pPart.getPopulation())
+        {
+            slots[person.getId()] = person.getInfo();
+        }
+        handIn(pEntry);
+    }
+
+    // Only the patches finding no slots for the tick allocate them, the first of them to publish its array wins
+    private PersonInfo[] getSlots(int pEntry)
+    {
+        PersonInfo[] slots = pending.get(pEntry);
+        if(slots != null)
+        {
+            return slots;
+        }
+        slots = new PersonInfo[populationSize];
+        if(!pending.compareAndSet(pEntry, null, slots))
+        {
+            return pending.get(pEntry);
+        }
+        synchronized(this)
+        {
+            pendingCount++;
+            maxPendingCount = Math.max(maxPendingCount, pendingCount);
+        }
+        return slots;
+    }
+
+    // Every patch places its people before it enters here, so they are visible to whoever passes the tick on
+    // Inside the lock we only take the completed ticks, they are passed on outside of it
+    private void handIn(int pEntry)
+    {
+        synchronized(this)
+        {
+            received[pEntry]++;
+
+            while(nextEntry < received.length && received[nextEntry] == patchCounts[nextEntry])
+            {
+                completed.addLast(pending.get(nextEntry));
+                pending.set(nextEntry, null);
+                nextEntry++;
+            }
+            if(passingOn || completed.isEmpty())
+            {
+                return;
+            }
+            passingOn = true;
+        }
+        passOn();
+    }
+
+    // Passes on the completed ticks until there are none left
+    // Only one patch at a time gets here, so the ticks are passed on in order
+    // The patches waiting for the window are woken up outside the lock, so they can go on right away
+    private void passOn()
+    {
+        while(true)
+        {
+            PersonInfo[] slots;
+            synchronized(this)
+            {
+                slots = completed.pollFirst();
+                if(slots == null)
+                {
+                    passingOn = false;
+                    return;
+                }
+            }
+            sink.accept(new TraceEntry(Arrays.asList(slots)));
+
+            List<Runnable> wakeUps;
+            synchronized(this)
+            {
+                pendingCount--;
+                passedEntry++;
+                wakeUps = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            for(Runnable wakeUp : wakeUps)
+            {
+                wakeUp.run();
+            }
+        }
+    }
+}
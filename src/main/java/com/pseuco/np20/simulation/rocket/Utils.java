@@ -2,6 +2,7 @@ package com.pseuco.np20.simulation.rocket;
 
 import java.util.Iterator;
 
+import com.pseuco.np20.model.Partition;
 import com.pseuco.np20.model.Rectangle;
 import com.pseuco.np20.model.Scenario;
 import com.pseuco.np20.model.XY;
@@ -12,6 +13,7 @@ import com.pseuco.np20.model.XY;
 public class Utils {
     static private class PatchesIterator implements Iterator<Rectangle> {
         private final Scenario scenario;
+        private final Partition partition;
 
         private final Iterator<Integer> yIterator;
 
@@ -25,12 +27,13 @@ public class Utils {
         private int lastX = 0;
         private int lastY = 0;
 
-        public PatchesIterator(final Scenario scenario) {
+        public PatchesIterator(final Scenario scenario, final Partition partition) {
             this.scenario = scenario;
-            this.yIterator = this.scenario.getPartition().getY().iterator();
+            this.partition = partition;
+            this.yIterator = this.partition.getY().iterator();
             this.maxX = this.scenario.getGridSize().getX();
             this.maxY = this.scenario.getGridSize().getY();
-            this.xIterator = this.scenario.getPartition().getX().iterator();
+            this.xIterator = this.partition.getX().iterator();
             if (this.yIterator.hasNext()) {
                 this.currentY = this.yIterator.next();
             } else {
@@ -55,7 +58,7 @@ public class Utils {
                 } else {
                     this.currentY = this.maxY;
                 }
-                this.xIterator = this.scenario.getPartition().getX().iterator();
+                this.xIterator = this.partition.getX().iterator();
                 this.lastX = 0;
                 return new Rectangle(topLeft, bottomRight.sub(topLeft));
             }
@@ -75,6 +78,17 @@ public class Utils {
      * @return An iterator over the patches.
      */
     static public Iterator<Rectangle> getPatches(Scenario scenario) {
-        return new PatchesIterator(scenario);
+        return getPatches(scenario, scenario.getPartition());
+    }
+
+    /**
+     * Returns an iterator iterating over the patches of the given partition of the scenario.
+     *
+     * @param scenario The scenario.
+     * @param partition The partition of the grid of the scenario.
+     * @return An iterator over the patches.
+     */
+    static public Iterator<Rectangle> getPatches(Scenario scenario, Partition partition) {
+        return new PatchesIterator(scenario, partition);
     }
 }
\ No newline at end of file
@@ -1,23 +1,32 @@
 package com.pseuco.np20.simulation.slug;
 
+import com.pseuco.np20.simulation.common.Checkpoint;
+import com.pseuco.np20.simulation.common.CheckpointWriter;
 import com.pseuco.np20.simulation.common.Context;
+import com.pseuco.np20.simulation.common.Occupancy;
 import com.pseuco.np20.simulation.common.Person;
+import com.pseuco.np20.simulation.common.Population;
+import com.pseuco.np20.simulation.common.QueryCounters;
+import com.pseuco.np20.simulation.common.QueryRegions;
 import com.pseuco.np20.simulation.common.Simulation;
+import com.pseuco.np20.simulation.common.SpatialHash;
+import com.pseuco.np20.simulation.common.TraceWriter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
+import com.pseuco.np20.model.ObstacleMask;
 import com.pseuco.np20.model.Output;
 import com.pseuco.np20.model.PersonInfo;
-import com.pseuco.np20.model.Query;
 import com.pseuco.np20.model.Rectangle;
 import com.pseuco.np20.model.Scenario;
 import com.pseuco.np20.model.Statistics;
 import com.pseuco.np20.model.TraceEntry;
-import com.pseuco.np20.model.XY;
 
 
 /**
@@ -26,27 +35,47 @@ import com.pseuco.np20.model.XY;
 public class Slug implements Simulation, Context {
     private final Scenario scenario;
 
-    private final List<Person> population = new LinkedList<>();
+    private final Population population;
+
+    private final Occupancy occupancy;
+    private final SpatialHash spatialHash;
+
+    private final String[] queryKeys;
+    private final QueryCounters counters;
 
     private final List<TraceEntry> trace = new LinkedList<>();
+    private TraceWriter traceWriter = null;
     private final Map<String, List<Statistics>> statistics = new HashMap<>();
 
+    private Checkpoint checkpoint = null;
+    private CheckpointWriter checkpointWriter = null;
+    private int checkpointInterval;
+    private int checkpointedEntries = 0;
+
     public Slug(Scenario scenario) {
         this.scenario = scenario;
+        this.population = new Population(scenario.getParameters(), scenario.getPopulation().size());
+        this.occupancy = new Occupancy(scenario.getGrid());
+        this.spatialHash = new SpatialHash(scenario.getParameters().getInfectionRadius());
+        this.queryKeys = scenario.getQueries().keySet().toArray(new String[0]);
+        final List<Rectangle> queryAreas = new ArrayList<>();
+        for (String queryKey : this.queryKeys) {
+            queryAreas.add(scenario.getQueries().get(queryKey).getArea());
+        }
+        this.counters = new QueryCounters(new QueryRegions(scenario.getGrid(), queryAreas, scenario.getGrid()));
+        this.population.setCounters(this.counters);
         this.populate();
         this.initializeStatistics();
-        this.extendOutput();
     }
 
     private void populate() {
-        // we populate the context with persons based on the respective info objects
-        int id = 0;
-        for (PersonInfo personInfo : this.scenario.getPopulation()) {
-            this.population.add(
-                new Person(id, this, this.scenario.getParameters(), personInfo)
-            );
-            id++;
+        // we populate the context with the persons of the scenario
+        final Population initial = Population.of(this.scenario.getParameters(), this.scenario.getPopulation());
+        for (int row = 0; row < initial.size(); row++) {
+            this.population.add(initial, row);
         }
+        this.occupancy.rebuild(this.population);
+        this.counters.rebuild(this.population);
     }
 
     private void initializeStatistics() {
@@ -66,9 +95,19 @@ public class Slug implements Simulation, Context {
         return this.scenario.getObstacles();
     }
 
+    @Override
+    public ObstacleMask getObstacleMask() {
+        return this.scenario.getObstacleMask();
+    }
+
     @Override
     public List<Person> getPopulation() {
-        return this.population;
+        return this.population.asList(this);
+    }
+
+    @Override
+    public Occupancy getOccupancy() {
+        return this.occupancy;
     }
 
     @Override
@@ -76,76 +115,118 @@ public class Slug implements Simulation, Context {
         return new Output(this.scenario, this.trace, this.statistics);
     }
 
+    @Override
+    public void setTraceWriter(TraceWriter traceWriter) {
+        this.traceWriter = traceWriter;
+    }
+
+    @Override
+    public void resume(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void setCheckpointWriter(CheckpointWriter checkpointWriter, int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("checkpoint interval must be positive");
+        }
+        this.checkpointWriter = checkpointWriter;
+        this.checkpointInterval = interval;
+    }
+
+    private void restore() {
+        // we replace the persons of the scenario with the persons of the checkpoint
+        this.population.clear();
+        final Population state = this.checkpoint.getPopulation();
+        for (int row = 0; row < state.size(); row++) {
+            this.population.add(state, row);
+        }
+        this.occupancy.rebuild(this.population);
+        this.counters.rebuild(this.population);
+
+        for (TraceEntry entry : this.checkpoint.getTrace()) {
+            this.record(entry);
+        }
+        for (Map.Entry<String, List<Statistics>> query : this.checkpoint.getStatistics().entrySet()) {
+            this.statistics.get(query.getKey()).addAll(query.getValue());
+        }
+    }
+
+    private void record(TraceEntry entry) {
+        if (this.checkpointWriter != null) {
+            this.checkpointWriter.writeTrace(entry);
+        }
+        if (this.traceWriter != null) {
+            this.traceWriter.write(entry);
+        } else {
+            this.trace.add(entry);
+        }
+    }
+
+    private void writeCheckpoint(int tick) {
+        // the checkpoint gets a copy of the persons, so we may go on while it is written
+        final Population snapshot = new Population(this.scenario.getParameters(), this.population.size());
+        for (int row = 0; row < this.population.size(); row++) {
+            snapshot.add(this.population, row);
+        }
+        final Map<String, List<Statistics>> statistics = new LinkedHashMap<>();
+        for (String queryKey : this.queryKeys) {
+            final List<Statistics> entries = this.statistics.get(queryKey);
+            statistics.put(queryKey, new ArrayList<>(entries.subList(this.checkpointedEntries, entries.size())));
+        }
+        this.checkpointedEntries = tick + 1;
+        this.checkpointWriter.writeCheckpoint(tick, Collections.singletonList(snapshot), statistics);
+    }
+
     private void extendStatistics() {
-        // we collect statistics based on the current SI²R values
-        for (Map.Entry<String, Query> entry : this.scenario.getQueries().entrySet()) {
-            final Query query = entry.getValue();
-            this.statistics.get(entry.getKey()).add(new Statistics(
-                this.population.stream().filter(
-                    (Person person) ->
-                        person.isSusceptible()
-                        && query.getArea().contains(person.getPosition())
-                ).count(),
-                this.population.stream().filter(
-                    (Person person) ->
-                        person.isInfected()
-                        && query.getArea().contains(person.getPosition())
-                ).count(),
-                this.population.stream().filter(
-                    (Person person) ->
-                        person.isInfectious()
-                        && query.getArea().contains(person.getPosition())
-                ).count(),
-                this.population.stream().filter(
-                    (Person person) ->
-                        person.isRecovered()
-                        && query.getArea().contains(person.getPosition())
-                ).count()
-            ));
+        // we take a snapshot of the SI²R values maintained by the counters
+        for (int query = 0; query < this.queryKeys.length; query++) {
+            this.statistics.get(this.queryKeys[query]).add(this.counters.getStatistics(query));
         }
     }
 
     private void extendOutput() {
         // we extend the statists and the trace for the current tick
         if (this.scenario.getTrace()) {
-            this.trace.add(
-                new TraceEntry(
-                    this.population.stream()
-                    .map(Person::getInfo)
-                    .collect(Collectors.toList())
-                )
-            );
+            final List<PersonInfo> infos = new ArrayList<>(this.population.size());
+            for (int index = 0; index < this.population.size(); index++) {
+                infos.add(this.population.getInfo(index));
+            }
+            this.record(new TraceEntry(infos));
         }
 
         this.extendStatistics();
     }
 
     private void tick() {
-        for (Person person : this.population) {
+        for (int index = 0; index < this.population.size(); index++) {
             // if this were a patch, the `onPersonTick` method should be called here
-            person.tick();
+            this.population.tick(index, this.getGrid(), this.getObstacleMask(), this.occupancy);
         }
 
         // bust the ghosts of all persons
-        this.population.stream().forEach(Person::bustGhost);
+        for (int index = 0; index < this.population.size(); index++) {
+            this.population.bustGhost(index, this.occupancy);
+        }
 
         // now compute how the infection spreads between the population
+        // only pairs within the infection radius are visited, in the order of a full pairwise loop
+        this.spatialHash.rebuild(this.population);
         for (int i = 0; i < this.population.size(); i++) {
-            for (int j = i + 1; j < this.population.size(); j++) {
-                final Person iPerson = this.population.get(i);
-                final Person jPerson = this.population.get(j);
-                final XY iPosition = iPerson.getPosition();
-                final XY jPosition = jPerson.getPosition();
-                final int deltaX = Math.abs(iPosition.getX() - jPosition.getX());
-                final int deltaY = Math.abs(iPosition.getY() - jPosition.getY());
-                final int distance = deltaX + deltaY;
-                if (distance <= this.scenario.getParameters().getInfectionRadius()) {
-                    if (iPerson.isInfectious() && iPerson.isCoughing() && jPerson.isBreathing()) {
-                        jPerson.infect();
-                    }
-                    if (jPerson.isInfectious()&& jPerson.isCoughing() && iPerson.isBreathing()) {
-                        iPerson.infect();
-                    }
+            final int neighbors = this.spatialHash.collectNeighbors(i);
+            for (int k = 0; k < neighbors; k++) {
+                final int j = this.spatialHash.getNeighbor(k);
+                if (
+                    this.population.isInfectious(i) && this.population.isCoughing(i)
+                    && this.population.isBreathing(j)
+                ) {
+                    this.population.infect(j);
+                }
+                if (
+                    this.population.isInfectious(j) && this.population.isCoughing(j)
+                    && this.population.isBreathing(i)
+                ) {
+                    this.population.infect(i);
                 }
             }
         }
@@ -156,9 +237,27 @@ public class Slug implements Simulation, Context {
 
     @Override
     public void run() {
-        for (int tick = 0; tick < this.scenario.getTicks(); tick++) {
+        int start = 0;
+        if (this.checkpoint != null) {
+            this.restore();
+            start = this.checkpoint.getTick();
+            if (this.checkpointWriter != null) {
+                // the new checkpoint file starts with the state we resumed from
+                this.writeCheckpoint(start);
+            }
+        } else {
+            this.extendOutput();
+        }
+
+        for (int tick = start; tick < this.scenario.getTicks(); tick++) {
             // if this were a patch, the `onPatchTick` method should be called here
             this.tick();
+            if (
+                this.checkpointWriter != null
+                && (tick + 1) % this.checkpointInterval == 0 && tick + 1 < this.scenario.getTicks()
+            ) {
+                this.writeCheckpoint(tick + 1);
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.common.BinaryFormat;
+
+import org.junit.Test;
+
+
+public class TestBinaryFormat {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final ClassLoader loader = TestBinaryFormat.class.getClassLoader();
+
+    private static File temporaryFile() throws IOException {
+        final File file = File.createTempFile("binary", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testOutputRoundTrip() throws IOException {
+        final Output output = objectMapper.readValue(
+            loader.getResourceAsStream("scenarios/public/we_love_np.result.json"), Output.class
+        );
+        final File file = temporaryFile();
+        BinaryFormat.writeOutput(file, output);
+        assertTrue(BinaryFormat.isBinaryOutput(file));
+
+        final Output read = BinaryFormat.readOutput(file);
+        assertEquals(output.getTrace().size(), read.getTrace().size());
+        assertEquals(objectMapper.writeValueAsString(output), objectMapper.writeValueAsString(read));
+    }
+
+    @Test
+    public void testScenarioRoundTrip() throws IOException {
+        final Parameters parameters = new Parameters(20, 150, 20, 140, 5, 3);
+        final Scenario scenario = new Scenario(
+            "binary", parameters, 10, new XY(30, 20), true,
+            new Partition(Arrays.asList(10, 20), Arrays.asList(5)),
+            new ArrayList<>(), new HashMap<>(),
+            Arrays.asList(
+                new PersonInfo(
+                    "seeded", new XY(1, 2), new byte[] { 1, 2, 3 },
+                    new InfectionState(InfectionState.State.INFECTED, 2), Direction.SOUTH_WEST
+                ),
+                new PersonInfo(
+                    "digested", new XY(29, 19), new byte[32],
+                    new InfectionState(InfectionState.State.RECOVERED, 7), Direction.NONE
+                )
+            )
+        );
+        final File file = temporaryFile();
+        BinaryFormat.writeScenario(file, scenario);
+        assertTrue(BinaryFormat.isBinary(file));
+        assertFalse(BinaryFormat.isBinaryOutput(file));
+
+        final Scenario read = BinaryFormat.readScenario(file);
+        assertEquals(objectMapper.writeValueAsString(scenario), objectMapper.writeValueAsString(read));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, read.getPopulation().get(0).getSeed());
+    }
+
+    @Test
+    public void testRejectsJson() throws IOException {
+        final File file = temporaryFile();
+        objectMapper.writeValue(file, new XY(1, 2));
+        assertFalse(BinaryFormat.isBinary(file));
+        try {
+            BinaryFormat.readScenario(file);
+            fail("expected a JSON file to be rejected");
+        } catch (IOException error) {
+            assertTrue(error.getMessage().contains("binary"));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.simulation.common.Checkpoint;
+import com.pseuco.np20.simulation.common.CheckpointWriter;
+import com.pseuco.np20.simulation.common.ScenarioLoader;
+import com.pseuco.np20.simulation.common.Simulation;
+import com.pseuco.np20.simulation.rocket.Rocket;
+import com.pseuco.np20.simulation.rocket.Starship;
+import com.pseuco.np20.simulation.slug.Slug;
+import com.pseuco.np20.validator.DummyValidator;
+import com.pseuco.np20.validator.InsufficientPaddingException;
+
+import org.junit.Test;
+
+
+public class TestCheckpoint {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String SCENARIO = "scenarios/public/we_love_np.json";
+
+    private static Scenario load() throws IOException {
+        return new ScenarioLoader(objectMapper).load(TestCheckpoint.class.getClassLoader().getResourceAsStream(SCENARIO));
+    }
+
+    private static File temporaryFile() throws IOException {
+        final File file = File.createTempFile("checkpoint", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static Rocket rocket(Scenario scenario) throws InsufficientPaddingException {
+        return new Rocket(scenario, 10, new DummyValidator(), 2);
+    }
+
+    private static String run(Simulation simulation) throws IOException {
+        simulation.run();
+        return objectMapper.writeValueAsString(simulation.getOutput());
+    }
+
+    private static String runWithCheckpoints(Simulation simulation, File file, Scenario scenario) throws IOException {
+        try (CheckpointWriter checkpointWriter = new CheckpointWriter(file, scenario)) {
+            simulation.setCheckpointWriter(checkpointWriter, 7);
+            simulation.run();
+        }
+        return objectMapper.writeValueAsString(simulation.getOutput());
+    }
+
+    @Test
+    public void testResumeSlug() throws IOException, InsufficientPaddingException {
+        final Scenario scenario = load();
+        final String expected = run(new Slug(scenario));
+        final File file = temporaryFile();
+        assertEquals(expected, runWithCheckpoints(new Slug(scenario), file, scenario));
+
+        final Checkpoint checkpoint = Checkpoint.read(file, scenario);
+        assertTrue(checkpoint.getTick() > 0);
+        assertEquals(0, checkpoint.getTick() % 7);
+
+        // the checkpoints of both engines are interchangeable
+        final Slug slug = new Slug(scenario);
+        slug.resume(checkpoint);
+        assertEquals(expected, run(slug));
+        final Rocket rocket = rocket(scenario);
+        rocket.resume(checkpoint);
+        assertEquals(expected, run(rocket));
+    }
+
+    @Test
+    public void testResumeRocket() throws IOException, InsufficientPaddingException {
+        final Scenario scenario = load();
+        final String expected = run(rocket(scenario));
+        final File file = temporaryFile();
+        assertEquals(expected, runWithCheckpoints(rocket(scenario), file, scenario));
+
+        final Rocket rocket = rocket(scenario);
+        rocket.resume(Checkpoint.read(file, scenario));
+        assertEquals(expected, run(rocket));
+    }
+
+    @Test
+    public void testResumeStarship() throws IOException {
+        final Scenario scenario = load();
+        final String expected = run(new Starship(scenario));
+        final File file = temporaryFile();
+        assertEquals(expected, runWithCheckpoints(new Starship(scenario), file, scenario));
+
+        final Checkpoint checkpoint = Checkpoint.read(file, scenario);
+        final Starship starship = new Starship(scenario);
+        starship.resume(checkpoint);
+        assertEquals(expected, run(starship));
+        final Slug slug = new Slug(scenario);
+        slug.resume(checkpoint);
+        assertEquals(expected, run(slug));
+    }
+
+    @Test
+    public void testTruncatedCheckpoint() throws IOException {
+        final Scenario scenario = load();
+        final String expected = run(new Slug(scenario));
+        final File file = temporaryFile();
+        runWithCheckpoints(new Slug(scenario), file, scenario);
+        final int last = Checkpoint.read(file, scenario).getTick();
+
+        // an interrupted write leaves an incomplete record, the last complete checkpoint is used instead
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            truncated.setLength(truncated.length() / 2);
+        }
+        final Checkpoint checkpoint = Checkpoint.read(file, scenario);
+        assertTrue(checkpoint.getTick() < last);
+
+        final Slug slug = new Slug(scenario);
+        slug.resume(checkpoint);
+        assertEquals(expected, run(slug));
+
+        // a record whose length has not been filled in is taken as the end of the file as well
+        try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+            truncated.seek(truncated.length());
+            truncated.writeByte(2);
+            truncated.writeInt(0);
+            truncated.writeInt(checkpoint.getTick() + 7);
+            truncated.writeInt(1);
+        }
+        final Checkpoint zeroLength = Checkpoint.read(file, scenario);
+        assertEquals(checkpoint.getTick(), zeroLength.getTick());
+
+        final Slug resumed = new Slug(scenario);
+        resumed.resume(zeroLength);
+        assertEquals(expected, run(resumed));
+    }
+
+    @Test
+    public void testReportsWriterErrors() throws IOException {
+        final Scenario scenario = load();
+        final CheckpointWriter checkpointWriter = new CheckpointWriter(temporaryFile(), scenario);
+        // a checkpoint without any part of the population cannot be written
+        checkpointWriter.writeCheckpoint(1, new ArrayList<>(), new HashMap<>());
+        try {
+            checkpointWriter.close();
+            fail("expected the failed checkpoint to be reported");
+        } catch (IOException error) {
+            assertNotNull(error.getCause());
+        }
+    }
+
+    @Test
+    public void testRejectsOtherScenario() throws IOException {
+        final Scenario scenario = load();
+        final File file = temporaryFile();
+        runWithCheckpoints(new Slug(scenario), file, scenario);
+
+        final Scenario other = objectMapper.readValue(
+            objectMapper.writeValueAsString(scenario).replaceFirst("\"name\":\"[^\"]*\"", "\"name\":\"other\""),
+            Scenario.class
+        );
+        try {
+            Checkpoint.read(file, other);
+            fail("expected a checkpoint of another scenario to be rejected");
+        } catch (IOException error) {
+            assertTrue(error.getMessage().contains("other"));
+        }
+    }
+}
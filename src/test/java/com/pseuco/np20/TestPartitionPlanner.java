@@ -0,0 +1,90 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.rocket.PartitionPlanner;
+
+import org.junit.Test;
+
+
+public class TestPartitionPlanner {
+    private static final Parameters PARAMETERS = new Parameters(128, 128, 32, 50, 3, 10);
+
+    private static Scenario scenario(int width, int height, List<XY> positions, Partition partition) {
+        final List<PersonInfo> population = new ArrayList<>();
+        for (XY position : positions) {
+            population.add(new PersonInfo(
+                "p",
+                position,
+                new byte[32],
+                new InfectionState(InfectionState.State.SUSCEPTIBLE, 0),
+                Direction.NONE
+            ));
+        }
+        return new Scenario(
+            "planner", PARAMETERS, 1, new XY(width, height), false, partition,
+            new ArrayList<>(), new HashMap<>(), population
+        );
+    }
+
+    private static void assertValidCuts(List<Integer> cuts, int length, int minimalSize) {
+        int last = 0;
+        for (int cut : cuts) {
+            assertTrue(cut - last >= minimalSize);
+            last = cut;
+        }
+        assertTrue(length - last >= minimalSize);
+    }
+
+    @Test
+    public void testClusterGetsNarrowPatches() {
+        // most persons crowd the left tenth of the grid
+        final Random random = new Random(42);
+        final List<XY> positions = new ArrayList<>();
+        for (int person = 0; person < 900; person++) {
+            positions.add(new XY(random.nextInt(20), random.nextInt(100)));
+        }
+        for (int person = 0; person < 100; person++) {
+            positions.add(new XY(20 + random.nextInt(180), random.nextInt(100)));
+        }
+        final Scenario scenario = scenario(
+            200, 100, positions, new Partition(Arrays.asList(50, 100, 150), Arrays.asList(50))
+        );
+
+        final Partition partition = PartitionPlanner.plan(scenario, 4);
+        assertEquals(3, partition.getX().size());
+        assertEquals(1, partition.getY().size());
+        assertValidCuts(partition.getX(), 200, 4);
+        assertValidCuts(partition.getY(), 100, 4);
+        assertTrue(partition.getX().get(1) < 50);
+    }
+
+    @Test
+    public void testHonoursPadding() {
+        final List<XY> positions = new ArrayList<>();
+        for (int person = 0; person < 50; person++) {
+            positions.add(new XY(0, 0));
+        }
+        final Scenario scenario = scenario(
+            30, 30, positions, new Partition(Arrays.asList(5, 10, 15, 20, 25), Arrays.asList(15))
+        );
+
+        final Partition partition = PartitionPlanner.plan(scenario, 10);
+        assertEquals(2, partition.getX().size());
+        assertValidCuts(partition.getX(), 30, 10);
+        assertValidCuts(partition.getY(), 30, 10);
+    }
+}
@@ -0,0 +1,72 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.common.Population;
+
+import org.junit.Test;
+
+
+public class TestPopulation {
+    private static final Parameters PARAMETERS = new Parameters(128, 128, 32, 50, 3, 10);
+
+    private static PersonInfo info(String name, int x, int y, byte[] seed) {
+        return new PersonInfo(
+            name,
+            new XY(x, y),
+            seed,
+            new InfectionState(InfectionState.State.SUSCEPTIBLE, 0),
+            Direction.NONE
+        );
+    }
+
+    private static byte[] seed(int value) {
+        final byte[] seed = new byte[32];
+        seed[0] = (byte) value;
+        return seed;
+    }
+
+    @Test
+    public void testRetainAndSort() {
+        final Population population = new Population(PARAMETERS, 1);
+        population.add(3, info("d", 5, 5, seed(3)));
+        population.add(1, info("b", 0, 0, seed(1)));
+        population.add(2, info("c", 9, 9, seed(2)));
+        population.add(0, info("a", 1, 1, seed(0)));
+
+        population.retainWithin(new Rectangle(new XY(0, 0), new XY(6, 6)));
+        assertEquals(3, population.size());
+
+        population.sortById();
+        assertEquals(0, population.getId(0));
+        assertEquals(1, population.getId(1));
+        assertEquals(3, population.getId(2));
+        assertEquals("a", population.getName(0));
+        assertEquals(5, population.getX(2));
+        assertArrayEquals(seed(3), population.getDigest(2));
+    }
+
+    @Test
+    public void testSeedOfArbitraryLength() throws NoSuchAlgorithmException {
+        final byte[] seed = new byte[] { 1, 2, 3 };
+        final Population population = new Population(PARAMETERS);
+        population.add(0, info("a", 0, 0, seed));
+        assertArrayEquals(seed, population.getDigest(0));
+
+        population.advance(0);
+        final byte[] expected = MessageDigest.getInstance("SHA-256").digest(seed);
+        assertArrayEquals(expected, population.getDigest(0));
+
+        population.advance(0);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(expected), population.getDigest(0));
+    }
+}
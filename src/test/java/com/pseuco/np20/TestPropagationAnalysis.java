@@ -0,0 +1,109 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.rocket.PropagationAnalysis;
+
+import org.junit.Test;
+
+
+public class TestPropagationAnalysis {
+    private static final Parameters PARAMETERS = new Parameters(20, 150, 20, 140, 5, 3);
+    private static final int TICKS = 100;
+
+    private static final Rectangle PATCH = new Rectangle(new XY(20, 20), new XY(20, 20));
+
+    private static Rectangle rectangle(int x, int y, int width, int height) {
+        return new Rectangle(new XY(x, y), new XY(width, height));
+    }
+
+    private static Scenario scenario(List<Rectangle> obstacles, List<XY> positions) {
+        final List<PersonInfo> population = new ArrayList<>();
+        for (XY position : positions) {
+            population.add(new PersonInfo(
+                "p",
+                position,
+                new byte[32],
+                new InfectionState(InfectionState.State.SUSCEPTIBLE, 0),
+                Direction.NONE
+            ));
+        }
+        return new Scenario(
+            "propagation", PARAMETERS, TICKS, new XY(60, 60), false,
+            new Partition(new ArrayList<>(), new ArrayList<>()),
+            obstacles, new HashMap<>(), population
+        );
+    }
+
+    /**
+     * Surrounds the patch with a wall thicker than the infection radius.
+     */
+    private static List<Rectangle> wall() {
+        return Arrays.asList(
+            rectangle(14, 14, 32, 6),
+            rectangle(14, 40, 32, 6),
+            rectangle(14, 20, 6, 20),
+            rectangle(40, 20, 6, 20)
+        );
+    }
+
+    @Test
+    public void testFreeSpace() {
+        final PropagationAnalysis.Reach reach = new PropagationAnalysis(
+            scenario(new ArrayList<>(), new ArrayList<>())
+        ).analyse(PATCH, 10);
+
+        // wrong positions spread by two cells per tick plus the infection radius
+        assertEquals(2, reach.getTicksAllowed());
+        final Rectangle[] paddings = reach.getPaddings(2);
+        assertEquals(8, paddings.length);
+        for (Rectangle padding : paddings) {
+            assertNotNull(padding);
+        }
+        assertEquals(9, paddings[0].getSize().getY());
+        assertEquals(9, paddings[6].getSize().getX());
+
+        // a single tick requires less padding
+        assertEquals(7, reach.getPaddings(1)[0].getSize().getY());
+    }
+
+    @Test
+    public void testWalledOffPatch() {
+        final PropagationAnalysis.Reach reach = new PropagationAnalysis(
+            scenario(wall(), new ArrayList<>())
+        ).analyse(PATCH, 10);
+
+        assertEquals(TICKS, reach.getTicksAllowed());
+        for (Rectangle padding : reach.getPaddings(TICKS)) {
+            assertNull(padding);
+        }
+    }
+
+    @Test
+    public void testStrandedPerson() {
+        // a person placed on the wall may be infected from outside and infect the patch
+        final PropagationAnalysis.Reach reach = new PropagationAnalysis(
+            scenario(wall(), Arrays.asList(new XY(17, 30)))
+        ).analyse(PATCH, 10);
+
+        assertTrue(reach.getTicksAllowed() < TICKS);
+        final Rectangle[] paddings = reach.getPaddings(reach.getTicksAllowed());
+        assertNotNull(paddings[6]);
+        assertNull(paddings[0]);
+        assertNull(paddings[2]);
+        assertNull(paddings[4]);
+    }
+}
@@ -0,0 +1,92 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.beust.jcommander.JCommander;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.generator.ScenarioGenerator;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+
+import org.junit.Test;
+
+
+public class TestScenarioGenerator {
+    private static byte[] generate(String... args) throws IOException {
+        final ScenarioGenerator generator = new ScenarioGenerator();
+        final String[] allArgs = Arrays.copyOf(args, args.length + 2);
+        allArgs[args.length] = "-out";
+        allArgs[args.length + 1] = "unused.json";
+        JCommander.newBuilder().addObject(generator).args(allArgs).build();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        generator.generate(output);
+        return output.toByteArray();
+    }
+
+    private static Scenario parse(byte[] json) throws IOException {
+        return new ObjectMapper().readValue(json, Scenario.class);
+    }
+
+    @Test
+    public void testValidScenario() throws IOException {
+        final Scenario scenario = parse(generate(
+            "-width", "64", "-height", "48", "-persons", "500", "-obstacle-density", "0.2",
+            "-clusters", "3", "-columns", "4", "-rows", "3", "-queries", "3"
+        ));
+
+        assertEquals(new XY(64, 48), scenario.getGridSize());
+        assertEquals(3, scenario.getPartition().getX().size());
+        assertEquals(2, scenario.getPartition().getY().size());
+        assertEquals(3, scenario.getQueries().size());
+        assertFalse(scenario.getObstacles().isEmpty());
+
+        assertEquals(500, scenario.getPopulation().size());
+        final Set<XY> positions = new HashSet<>();
+        for (PersonInfo person : scenario.getPopulation()) {
+            assertTrue(scenario.getGrid().contains(person.getPosition()));
+            assertFalse(scenario.onObstacle(person.getPosition()));
+            assertTrue(positions.add(person.getPosition()));
+        }
+    }
+
+    @Test
+    public void testDeterministic() throws IOException {
+        final String[] args = {"-width", "40", "-height", "40", "-persons", "200", "-clusters", "2", "-seed", "7"};
+        assertArrayEquals(generate(args), generate(args));
+
+        final String[] otherSeed = args.clone();
+        otherSeed[otherSeed.length - 1] = "8";
+        assertFalse(Arrays.equals(generate(args), generate(otherSeed)));
+    }
+
+    @Test
+    public void testFullGrid() throws IOException {
+        // strongly clustered persons still fill every cell in the second pass
+        final Scenario scenario = parse(generate(
+            "-width", "20", "-height", "20", "-persons", "400", "-clusters", "1", "-clustering", "1"
+        ));
+        final Set<XY> positions = new HashSet<>();
+        for (PersonInfo person : scenario.getPopulation()) {
+            positions.add(person.getPosition());
+        }
+        assertEquals(400, positions.size());
+    }
+
+    @Test
+    public void testTooManyPersons() throws IOException {
+        try {
+            generate("-width", "10", "-height", "10", "-persons", "101");
+            fail("the persons do not fit the grid");
+        } catch (IllegalArgumentException error) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.simulation.common.Population;
+import com.pseuco.np20.simulation.common.ScenarioLoader;
+
+import org.junit.Test;
+
+
+public class TestScenarioLoader {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String SCENARIO = "scenarios/public/we_love_np.json";
+
+    private static InputStream open(String resource) {
+        return TestScenarioLoader.class.getClassLoader().getResourceAsStream(resource);
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMatchesDataBinding() throws IOException {
+        final Scenario bound = objectMapper.readValue(open(SCENARIO), Scenario.class);
+        final Scenario loaded = new ScenarioLoader(objectMapper).load(open(SCENARIO));
+
+        assertEquals(bound.getPopulation().size(), loaded.getPopulation().size());
+        assertEquals(objectMapper.writeValueAsString(bound), objectMapper.writeValueAsString(loaded));
+
+        // the engines take over the loaded population as it is
+        final Population population = Population.of(loaded.getParameters(), loaded.getPopulation());
+        assertSame(population, Population.of(loaded.getParameters(), loaded.getPopulation()));
+        assertEquals(bound.getPopulation().get(1).getName(), population.getName(1));
+    }
+
+    @Test
+    public void testPopulationBeforeParameters() throws IOException {
+        final String json = "{\"population\": [{\"name\": \"a\", \"pos\": {\"x\": 1, \"y\": 2},"
+            + " \"rngState\": \"AQID\", \"infectionState\": {\"type\": \"infected\"}, \"direction\": \"NE\"}],"
+            + " \"name\": \"order\", \"ticks\": 3, \"gridSize\": {\"x\": 4, \"y\": 4}, \"trace\": false,"
+            + " \"partition\": {\"x\": [], \"y\": []}, \"obstacles\": [], \"statQueries\": {},"
+            + " \"parameters\": {\"infectionRadius\": 1, \"incubationTime\": 2, \"coughThreshold\": 3,"
+            + " \"breathThreshold\": 4, \"accelerationDivisor\": 5, \"recoveryTime\": 6}}";
+        final Scenario scenario = new ScenarioLoader(objectMapper).load(stream(json));
+
+        final Population population = Population.of(scenario.getParameters(), scenario.getPopulation());
+        assertSame(scenario.getParameters(), population.getParameters());
+        assertEquals(1, population.getX(0));
+        assertEquals(2, population.getY(0));
+        assertEquals(0, population.getInStateSince(0));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, population.getDigest(0));
+        assertEquals("NORTH_EAST", population.getDirection(0).name());
+        assertTrue(population.isInfected(0));
+    }
+
+    @Test
+    public void testUnknownProperty() throws IOException {
+        try {
+            new ScenarioLoader(objectMapper).load(stream("{\"name\": \"unknown\", \"speed\": 1}"));
+            fail("expected the unknown property to be rejected");
+        } catch (JsonParseException error) {
+            assertTrue(error.getMessage().contains("speed"));
+        }
+    }
+}
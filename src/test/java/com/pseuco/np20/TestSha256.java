@@ -0,0 +1,48 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import com.pseuco.np20.simulation.common.Sha256;
+
+import org.junit.Test;
+
+
+public class TestSha256 {
+    @Test
+    public void testMatchesMessageDigest() throws NoSuchAlgorithmException {
+        final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        final Random random = new Random(42);
+        byte[] expected = new byte[Sha256.LENGTH];
+        random.nextBytes(expected);
+        final byte[] digest = expected.clone();
+        for (int i = 0; i < 1000; i++) {
+            expected = messageDigest.digest(expected);
+            Sha256.hash(digest, 0, digest, 0);
+            assertArrayEquals(expected, digest);
+        }
+    }
+
+    @Test
+    public void testOffsets() throws NoSuchAlgorithmException {
+        final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        final byte[] buffer = new byte[3 * Sha256.LENGTH];
+        new Random(7).nextBytes(buffer);
+        final byte[] message = new byte[Sha256.LENGTH];
+        System.arraycopy(buffer, Sha256.LENGTH, message, 0, Sha256.LENGTH);
+        Sha256.hash(buffer, Sha256.LENGTH, buffer, 2 * Sha256.LENGTH);
+        final byte[] digest = new byte[Sha256.LENGTH];
+        System.arraycopy(buffer, 2 * Sha256.LENGTH, digest, 0, Sha256.LENGTH);
+        assertArrayEquals(messageDigest.digest(message), digest);
+    }
+
+    @Test
+    public void testOtherLengths() throws NoSuchAlgorithmException {
+        final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        final byte[] message = "We love NP".getBytes();
+        assertArrayEquals(messageDigest.digest(message), Sha256.digest(message));
+    }
+}
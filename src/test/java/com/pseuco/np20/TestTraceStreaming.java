@@ -0,0 +1,126 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pseuco.np20.model.Direction;
+import com.pseuco.np20.model.InfectionState;
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.PersonInfo;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.Statistics;
+import com.pseuco.np20.model.TraceEntry;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.common.TraceWriter;
+import com.pseuco.np20.simulation.rocket.PatchExecution;
+import com.pseuco.np20.simulation.rocket.Rocket;
+import com.pseuco.np20.simulation.slug.Slug;
+import com.pseuco.np20.validator.DummyValidator;
+import com.pseuco.np20.validator.InsufficientPaddingException;
+
+import org.junit.Test;
+
+
+public class TestTraceStreaming {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final int TICKS = 300;
+
+    /**
+     * Separates the two patches by a wall on the cut, so they have no channels.
+     *
+     * <p>
+     * The left patch is crowded and the right one almost empty, so the right one would
+     * run ahead to the end if nothing held it back.
+     * </p>
+     */
+    private static Scenario walledScenario() {
+        final List<PersonInfo> population = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            population.add(person(i, new XY(i % 20, i / 20)));
+        }
+        for (int i = 0; i < 5; i++) {
+            population.add(person(200 + i, new XY(40 + 3 * i, 10)));
+        }
+        population.set(0, new PersonInfo(
+            "p0", new XY(0, 0), seed(0), new InfectionState(InfectionState.State.INFECTED, 0), Direction.NONE
+        ));
+        return new Scenario(
+            "walled", new Parameters(20, 150, 20, 140, 5, 3), TICKS, new XY(60, 20), true,
+            new Partition(Arrays.asList(30), new ArrayList<>()),
+            Arrays.asList(new Rectangle(new XY(24, 0), new XY(12, 20))), new HashMap<>(), population
+        );
+    }
+
+    private static PersonInfo person(int id, XY position) {
+        return new PersonInfo(
+            "p" + id, position, seed(id), new InfectionState(InfectionState.State.SUSCEPTIBLE, 0), Direction.NONE
+        );
+    }
+
+    private static byte[] seed(int id) {
+        final byte[] seed = new byte[32];
+        seed[0] = (byte) id;
+        seed[1] = (byte) (id >> 8);
+        return seed;
+    }
+
+    /**
+     * Collects the streamed trace entries.
+     */
+    private static class CollectingTraceWriter implements TraceWriter {
+        private final List<TraceEntry> trace = new ArrayList<>();
+
+        @Override
+        public void write(TraceEntry entry) {
+            this.trace.add(entry);
+        }
+
+        @Override
+        public void finish(Map<String, List<Statistics>> statistics) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void testWalledPartition(PatchExecution execution) throws IOException, InsufficientPaddingException {
+        final Scenario scenario = walledScenario();
+        final Slug slug = new Slug(scenario);
+        slug.run();
+
+        final Rocket rocket = new Rocket(scenario, 10, new DummyValidator(), execution, 1);
+        final CollectingTraceWriter traceWriter = new CollectingTraceWriter();
+        rocket.setTraceWriter(traceWriter);
+        rocket.run();
+
+        assertEquals(
+            objectMapper.writeValueAsString(slug.getOutput().getTrace()),
+            objectMapper.writeValueAsString(traceWriter.trace)
+        );
+        // the patch ahead has to wait for the other one instead of piling up its ticks
+        final int pending = rocket.getMetrics().getMaxPendingTraceTicks();
+        assertTrue(pending > 0);
+        assertTrue("pending ticks: " + pending, pending <= 2);
+    }
+
+    @Test
+    public void testWalledPartitionOnPool() throws IOException, InsufficientPaddingException {
+        testWalledPartition(PatchExecution.POOL);
+    }
+
+    @Test
+    public void testWalledPartitionOnThreads() throws IOException, InsufficientPaddingException {
+        testWalledPartition(PatchExecution.PLATFORM_THREADS);
+    }
+}
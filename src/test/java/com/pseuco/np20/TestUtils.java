@@ -0,0 +1,97 @@
+package com.pseuco.np20;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import com.pseuco.np20.model.Parameters;
+import com.pseuco.np20.model.Partition;
+import com.pseuco.np20.model.Rectangle;
+import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.model.XY;
+import com.pseuco.np20.simulation.common.Utils;
+
+import org.junit.Test;
+
+
+public class TestUtils {
+    private static final int ROUNDS = 2000;
+
+    /**
+     * Compares every source cell with every target cell.
+     */
+    private static boolean mayPropagateFromReference(Scenario scenario, Rectangle source, Rectangle target) {
+        for (final XY sourceCell : source) {
+            if (scenario.onObstacle(sourceCell)) {
+                continue;
+            }
+            for (final XY targetCell : target) {
+                if (scenario.onObstacle(targetCell)) {
+                    continue;
+                }
+                final int deltaX = Math.abs(sourceCell.getX() - targetCell.getX());
+                final int deltaY = Math.abs(sourceCell.getY() - targetCell.getY());
+                if (deltaX <= 1 && deltaY <= 1) {
+                    return true;
+                }
+                if (deltaX + deltaY <= scenario.getParameters().getInfectionRadius()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Rectangle randomRectangle(Random random, XY gridSize) {
+        // rectangles may reach beyond the grid, the cell iterator requires them to be non-empty
+        final int x = random.nextInt(gridSize.getX() + 4) - 2;
+        final int y = random.nextInt(gridSize.getY() + 4) - 2;
+        return new Rectangle(new XY(x, y), new XY(1 + random.nextInt(9), 1 + random.nextInt(9)));
+    }
+
+    private static Scenario randomScenario(Random random) {
+        final XY gridSize = new XY(1 + random.nextInt(20), 1 + random.nextInt(20));
+        final List<Rectangle> obstacles = new ArrayList<>();
+        for (int obstacle = random.nextInt(6); obstacle > 0; obstacle--) {
+            obstacles.add(randomRectangle(random, gridSize));
+        }
+        final Parameters parameters = new Parameters(20, 150, 20, 140, random.nextInt(5), 3);
+        return new Scenario(
+            "utils", parameters, 10, gridSize, false,
+            new Partition(new ArrayList<>(), new ArrayList<>()),
+            obstacles, new HashMap<>(), new ArrayList<>()
+        );
+    }
+
+    @Test
+    public void testMayPropagateFromMatchesReference() {
+        final Random random = new Random(42);
+        for (int round = 0; round < ROUNDS; round++) {
+            final Scenario scenario = randomScenario(random);
+            final Rectangle source = randomRectangle(random, scenario.getGridSize());
+            final Rectangle target = randomRectangle(random, scenario.getGridSize());
+            assertEquals(
+                "source " + source + ", target " + target + ", obstacles " + scenario.getObstacles()
+                    + ", radius " + scenario.getParameters().getInfectionRadius(),
+                mayPropagateFromReference(scenario, source, target),
+                Utils.mayPropagateFrom(scenario, source, target)
+            );
+        }
+    }
+
+    @Test
+    public void testMayPropagateFromDiagonal() {
+        final Parameters parameters = new Parameters(20, 150, 20, 140, 0, 3);
+        final Scenario scenario = new Scenario(
+            "utils", parameters, 10, new XY(10, 10), false,
+            new Partition(new ArrayList<>(), new ArrayList<>()),
+            new ArrayList<>(), new HashMap<>(), new ArrayList<>()
+        );
+        final Rectangle source = new Rectangle(new XY(2, 2), new XY(2, 2));
+        assertTrue(Utils.mayPropagateFrom(scenario, source, new Rectangle(new XY(4, 4), new XY(1, 1))));
+        assertFalse(Utils.mayPropagateFrom(scenario, source, new Rectangle(new XY(5, 4), new XY(1, 1))));
+    }
+}
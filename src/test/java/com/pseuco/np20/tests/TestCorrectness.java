@@ -16,6 +16,16 @@ public class TestCorrectness {
         TestCase.getPublic("we_love_np").launchRocket(15);
     }
 
+    @Test
+    public void testWeLoveNPPlanned10() {
+        TestCase.getPublic("we_love_np").launchPlannedRocket(10);
+    }
+
+    @Test
+    public void testWeLoveNPRebalanced10() {
+        TestCase.getPublic("we_love_np").launchRebalancedRocket(10, 3);
+    }
+
 //    @Test
 //    public void ourTest() {
 //        TestCase.getPublic("we_love_np").launchRocket(7);
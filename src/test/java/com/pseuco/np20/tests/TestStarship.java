@@ -0,0 +1,13 @@
+package com.pseuco.np20.tests;
+
+import com.pseuco.np20.tests.common.TestCase;
+
+import org.junit.Test;
+
+
+public class TestStarship {
+    @Test
+    public void testWeLoveNP() {
+        TestCase.getPublic("we_love_np").launchStarship();
+    }
+}
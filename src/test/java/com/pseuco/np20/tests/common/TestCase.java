@@ -6,8 +6,11 @@ import java.io.IOException;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pseuco.np20.model.Output;
+import com.pseuco.np20.model.Partition;
 import com.pseuco.np20.model.Scenario;
+import com.pseuco.np20.simulation.rocket.PartitionPlanner;
 import com.pseuco.np20.simulation.rocket.Rocket;
+import com.pseuco.np20.simulation.rocket.Starship;
 import com.pseuco.np20.simulation.slug.Slug;
 import com.pseuco.np20.validator.DummyValidator;
 import com.pseuco.np20.validator.InsufficientPaddingException;
@@ -60,8 +63,19 @@ public class TestCase {
     }
 
     public Checker launchRocket(Validator validator, int padding) {
+        return this.launchRocket(validator, padding, this.scenario.getPartition());
+    }
+
+    public Checker launchRocket(Validator validator, int padding, Partition partition) {
+        return this.launchRocket(validator, padding, partition, 0);
+    }
+
+    public Checker launchRocket(Validator validator, int padding, Partition partition, int rebalanceInterval) {
         try {
             final Rocket rocket = new Rocket(this.scenario, padding, validator);
+            rocket.setPartition(partition);
+            // a tolerance of zero rebalances at every check
+            rocket.setRebalancing(rebalanceInterval, 0.0);
             rocket.run();
             final Output output = rocket.getOutput();
             final Checker checker = new Checker();
@@ -80,5 +94,26 @@ public class TestCase {
         return this.launchRocket(new DummyValidator(), padding);
     }
 
+    public Checker launchRebalancedRocket(int padding, int rebalanceInterval) {
+        return this.launchRocket(new DummyValidator(), padding, this.scenario.getPartition(), rebalanceInterval);
+    }
+
+    public Checker launchPlannedRocket(int padding) {
+        return this.launchRocket(new DummyValidator(), padding, PartitionPlanner.plan(this.scenario, padding));
+    }
+
+    public Checker launchStarship() {
+        final Starship starship = new Starship(this.scenario);
+        starship.run();
+        final Output output = starship.getOutput();
+        final Checker checker = new Checker();
+        checker.check(output, this.output);
+        for (String problem : checker.getProblems()) {
+            System.err.println(problem);
+        }
+        assertFalse("invalid output", checker.hasProblems());
+        return checker;
+    }
+
 
 }
\ No newline at end of file